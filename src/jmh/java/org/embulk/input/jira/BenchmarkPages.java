@@ -0,0 +1,205 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.embulk.config.ConfigSource;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.client.JiraClient;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+
+/*
+ * Search pages recorded in the test fixtures, grown to the shapes seen on real sites
+ * */
+final class BenchmarkPages
+{
+    static final int ISSUES_PER_PAGE = 50;
+    private static final int CUSTOM_FIELDS = 300;
+    private static final int HISTORIES = 100;
+    private static final int ITEMS_PER_HISTORY = 3;
+
+    enum Shape
+    {
+        // The issue of the fixture as it is
+        SMALL,
+        // Plus custom fields of all the kinds JIRA returns
+        WIDE,
+        // Plus a complete changelog
+        CHANGELOG
+    }
+
+    private BenchmarkPages()
+    {
+    }
+
+    static String searchResponse(final Shape shape)
+    {
+        final JsonObject template = fixture().get("body").getAsJsonObject().get("issues").getAsJsonArray().get(0).getAsJsonObject();
+        final JsonArray issues = new JsonArray();
+        for (int i = 0; i < ISSUES_PER_PAGE; i++) {
+            final JsonObject issue = template.deepCopy();
+            issue.addProperty("id", String.valueOf(10000 + i));
+            issue.addProperty("key", "BENCH-" + i);
+            final JsonObject fields = issue.get("fields").getAsJsonObject();
+            if (shape == Shape.WIDE) {
+                for (int field = 0; field < CUSTOM_FIELDS; field++) {
+                    fields.add(customField(field), customFieldValue(field, i));
+                }
+            }
+            if (shape == Shape.CHANGELOG) {
+                issue.add("changelog", changelog(i));
+            }
+            issues.add(issue);
+        }
+        final JsonObject response = new JsonObject();
+        response.addProperty("maxResults", ISSUES_PER_PAGE);
+        response.addProperty("nextPageToken", "benchmark");
+        response.add("issues", issues);
+        return response.toString();
+    }
+
+    static List<Issue> issues(final Shape shape)
+    {
+        final List<Issue> issues = new ArrayList<>();
+        try {
+            JiraClient.parseSearchResponse(new StringReader(searchResponse(shape)), issues::add);
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return issues;
+    }
+
+    /*
+     * The columns of the fixture, plus one column per custom field or the changelog
+     * */
+    static PluginTask task(final Shape shape)
+    {
+        final ConfigSource config = TestHelpers.config();
+        final List<Map<String, Object>> columns = new ArrayList<>();
+        columns.add(column("boolean", "boolean"));
+        columns.add(column("long", "long"));
+        columns.add(column("double", "double"));
+        columns.add(column("string", "string"));
+        final Map<String, Object> date = column("date", "timestamp");
+        date.put("format", "%Y-%m-%dT%H:%M:%S.%L%z");
+        columns.add(date);
+        columns.add(column("json", "json"));
+        if (shape == Shape.WIDE) {
+            for (int field = 0; field < CUSTOM_FIELDS; field++) {
+                switch (field % 4) {
+                    case 0:
+                        columns.add(column(customField(field), "string"));
+                        break;
+                    case 1:
+                        columns.add(column(customField(field), "double"));
+                        break;
+                    case 2:
+                        columns.add(column(customField(field) + ".value", "string"));
+                        break;
+                    default:
+                        columns.add(column(customField(field), "json"));
+                        break;
+                }
+            }
+        }
+        if (shape == Shape.CHANGELOG) {
+            columns.add(column("changelog", "json"));
+        }
+        return CONFIG_MAPPER.map(config.set("columns", columns), PluginTask.class);
+    }
+
+    private static JsonObject fixture()
+    {
+        try {
+            return TestHelpers.getJsonFromFile("jira_input_plugin.json").get("2PagesResult").getAsJsonObject();
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String customField(final int field)
+    {
+        return "customfield_" + (10000 + field);
+    }
+
+    private static JsonElement customFieldValue(final int field, final int issue)
+    {
+        final JsonObject holder = new JsonObject();
+        switch (field % 4) {
+            case 0:
+                holder.addProperty("value", "Value " + field + " of issue " + issue);
+                break;
+            case 1:
+                holder.addProperty("value", field * 1.5 + issue);
+                break;
+            case 2:
+                final JsonObject option = new JsonObject();
+                option.addProperty("self", "https://example.com/rest/api/2/customFieldOption/" + field);
+                option.addProperty("value", "Option " + field);
+                option.addProperty("id", String.valueOf(field));
+                holder.add("value", option);
+                break;
+            default:
+                final JsonArray labels = new JsonArray();
+                labels.add("label-" + field);
+                labels.add("label-" + issue);
+                holder.add("value", labels);
+                break;
+        }
+        return holder.get("value");
+    }
+
+    private static JsonObject changelog(final int issue)
+    {
+        final JsonArray histories = new JsonArray();
+        for (int i = 0; i < HISTORIES; i++) {
+            final JsonObject author = new JsonObject();
+            author.addProperty("accountId", "account-" + (i % 7));
+            author.addProperty("displayName", "User " + (i % 7));
+            author.addProperty("active", true);
+            final JsonArray items = new JsonArray();
+            for (int j = 0; j < ITEMS_PER_HISTORY; j++) {
+                final JsonObject item = new JsonObject();
+                item.addProperty("field", "status");
+                item.addProperty("fieldtype", "jira");
+                item.addProperty("fieldId", "status");
+                item.addProperty("from", String.valueOf(j));
+                item.addProperty("fromString", "Status " + j);
+                item.addProperty("to", String.valueOf(j + 1));
+                item.addProperty("toString", "Status " + (j + 1));
+                items.add(item);
+            }
+            final JsonObject history = new JsonObject();
+            history.addProperty("id", String.valueOf(issue * HISTORIES + i));
+            history.add("author", author);
+            history.addProperty("created", String.format("2019-01-%02dT%02d:00:00.000+0000", i % 28 + 1, i % 24));
+            history.add("items", items);
+            histories.add(history);
+        }
+        final JsonObject changelog = new JsonObject();
+        changelog.addProperty("startAt", 0);
+        changelog.addProperty("maxResults", HISTORIES);
+        changelog.addProperty("total", HISTORIES);
+        changelog.add("histories", histories);
+        return changelog;
+    }
+
+    private static Map<String, Object> column(final String name, final String type)
+    {
+        final Map<String, Object> column = new LinkedHashMap<>();
+        column.put("name", name);
+        column.put("type", type);
+        return column;
+    }
+}
@@ -0,0 +1,215 @@
+package org.embulk.input.jira;
+
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER_FACTORY;
+
+/*
+ * Load the issues of a MockJiraServer through the whole run() path of the plugin and report the throughput.
+ * Arguments are key=value pairs. issues, page_size, latency_ms, custom_fields, throttle_every, retry_after_sec and compress shape the server,
+ * and the others are set to the plugin configuration, i.e. max_results=100 prefetch_pages=2 search_chains=4 max_connections_per_route=4
+ * */
+public final class EndToEndBenchmark
+{
+    private EndToEndBenchmark()
+    {
+    }
+
+    public static void main(final String[] args) throws Exception
+    {
+        final MockJiraServer.Settings settings = new MockJiraServer.Settings();
+        final Map<String, String> options = new LinkedHashMap<>();
+        for (final String arg : args) {
+            final String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException(String.format("Expected key=value but got '%s'", arg));
+            }
+            options.put(pair[0], pair[1]);
+        }
+        settings.issues = Integer.parseInt(take(options, "issues", settings.issues));
+        settings.pageSize = Integer.parseInt(take(options, "page_size", settings.pageSize));
+        settings.latencyMillis = Long.parseLong(take(options, "latency_ms", settings.latencyMillis));
+        settings.customFields = Integer.parseInt(take(options, "custom_fields", settings.customFields));
+        settings.throttleEvery = Integer.parseInt(take(options, "throttle_every", settings.throttleEvery));
+        settings.retryAfterSeconds = Integer.parseInt(take(options, "retry_after_sec", settings.retryAfterSeconds));
+        settings.compress = Boolean.parseBoolean(take(options, "compress", settings.compress));
+
+        try (MockJiraServer server = new MockJiraServer(settings)) {
+            final ConfigSource config = createConfig(server, settings.customFields);
+            options.forEach(config::set);
+            final BufferAllocator allocator = new EmbulkTestRuntime().getBufferAllocator();
+            final AtomicLong records = new AtomicLong();
+            final BenchmarkPlugin plugin = new BenchmarkPlugin(allocator);
+
+            final long started = System.nanoTime();
+            plugin.transaction(config, new ParallelControl(plugin, records));
+            final double seconds = (System.nanoTime() - started) / 1e9;
+
+            final List<Long> pageNanos = server.getPageNanos();
+            Collections.sort(pageNanos);
+            System.out.println(String.format("records:       %d in %.2f s", records.get(), seconds));
+            System.out.println(String.format("issues/sec:    %.1f", records.get() / seconds));
+            System.out.println(String.format("bytes/sec:     %.1f (%d bytes)", server.getBytesSent() / seconds, server.getBytesSent()));
+            System.out.println(String.format("searches:      %d (%d throttled)", server.getSearches(), server.getThrottled()));
+            System.out.println(String.format("page latency:  p50 %.1f ms, p99 %.1f ms", percentile(pageNanos, 0.50) / 1e6, percentile(pageNanos, 0.99) / 1e6));
+        }
+    }
+
+    private static String take(final Map<String, String> options, final String key, final Object defaultValue)
+    {
+        final String value = options.remove(key);
+        return value == null ? String.valueOf(defaultValue) : value;
+    }
+
+    private static ConfigSource createConfig(final MockJiraServer server, final int customFields)
+    {
+        final List<Map<String, Object>> columns = new ArrayList<>();
+        columns.add(column("id", "long"));
+        columns.add(column("key", "string"));
+        columns.add(column("summary", "string"));
+        columns.add(column("status.name", "string"));
+        columns.add(column("created", "timestamp"));
+        columns.add(column("updated", "timestamp"));
+        for (int field = 0; field < customFields; field++) {
+            columns.add(column(MockJiraServer.customField(field), "string"));
+        }
+        return CONFIG_MAPPER_FACTORY.newConfigSource()
+                .set("type", "jira")
+                .set("username", "benchmark@example.com")
+                .set("password", "benchmark")
+                .set("uri", server.getUri())
+                .set("jql", "project = BENCH")
+                .set("requests_per_second", 0)
+                .set("columns", columns);
+    }
+
+    private static Map<String, Object> column(final String name, final String type)
+    {
+        final Map<String, Object> column = new LinkedHashMap<>();
+        column.put("name", name);
+        column.put("type", type);
+        if ("timestamp".equals(type)) {
+            column.put("format", Constant.DEFAULT_TIMESTAMP_PATTERN);
+        }
+        return column;
+    }
+
+    private static long percentile(final List<Long> sorted, final double quantile)
+    {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get(Math.max(0, (int) Math.ceil(quantile * sorted.size()) - 1));
+    }
+
+    /*
+     * The plugin writing to pages of the given allocator, outside of an Embulk session
+     * */
+    private static final class BenchmarkPlugin extends JiraInputPlugin
+    {
+        private final BufferAllocator allocator;
+
+        BenchmarkPlugin(final BufferAllocator allocator)
+        {
+            this.allocator = allocator;
+        }
+
+        @Override
+        public PageBuilder getPageBuilder(final Schema schema, final PageOutput output)
+        {
+            return new PageBuilder(allocator, schema, output);
+        }
+
+        @Override
+        public boolean isPreview()
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Run the tasks in parallel as the local executor does
+     * */
+    private static final class ParallelControl implements InputPlugin.Control
+    {
+        private final JiraInputPlugin plugin;
+        private final AtomicLong records;
+
+        ParallelControl(final JiraInputPlugin plugin, final AtomicLong records)
+        {
+            this.plugin = plugin;
+            this.records = records;
+        }
+
+        @Override
+        public List<TaskReport> run(final TaskSource taskSource, final Schema schema, final int taskCount)
+        {
+            final ExecutorService executor = Executors.newFixedThreadPool(taskCount);
+            try {
+                final List<Future<TaskReport>> futures = new ArrayList<>();
+                for (int i = 0; i < taskCount; i++) {
+                    final int taskIndex = i;
+                    futures.add(executor.submit(() -> plugin.run(taskSource, schema, taskIndex, new CountingPageOutput(records))));
+                }
+                final List<TaskReport> reports = new ArrayList<>();
+                for (final Future<TaskReport> future : futures) {
+                    reports.add(future.get());
+                }
+                return reports;
+            }
+            catch (final InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static final class CountingPageOutput implements PageOutput
+    {
+        private final AtomicLong records;
+
+        CountingPageOutput(final AtomicLong records)
+        {
+            this.records = records;
+        }
+
+        @Override
+        public void add(final Page page)
+        {
+            records.addAndGet(page.getRecordCount());
+            page.release();
+        }
+
+        @Override
+        public void finish()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.embulk.input.jira;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import static org.embulk.input.jira.Constant.CREDENTIAL_URI_PATH;
+import static org.embulk.input.jira.Constant.SEARCH_URI_PATH;
+
+/*
+ * Local stand-in for the JIRA endpoints used by run(), serving synthetic issues.
+ * Only the id ranges of search_chains and ORDER BY id DESC are understood in JQLs, so partitioned tasks each load all the issues
+ * */
+final class MockJiraServer implements AutoCloseable
+{
+    static final class Settings
+    {
+        // Issues served for a JQL
+        int issues = 10000;
+        // Upper bound of maxResults, as JIRA caps it
+        int pageSize = 100;
+        // Added to every search response
+        long latencyMillis;
+        // Custom fields per issue, besides summary, status, created and updated
+        int customFields = 20;
+        // Answer every n-th search with 429, 0 never does
+        int throttleEvery;
+        int retryAfterSeconds = 1;
+        // Gzip the responses when the client accepts it
+        boolean compress = true;
+    }
+
+    private static final String PAGE_TOKEN_PREFIX = "offset-";
+    private static final int FIRST_ID = 10000;
+    private static final Pattern ID_FROM = Pattern.compile("\\bid >= (\\d+)");
+    private static final Pattern ID_TO = Pattern.compile("\\bid < (\\d+)");
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final List<Long> pageNanos = Collections.synchronizedList(new ArrayList<>());
+
+    MockJiraServer(final Settings settings) throws IOException
+    {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("mock-jira-%d")
+                .setDaemon(true)
+                .build());
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> respond(exchange, 200, "{}"));
+        server.createContext("/" + CREDENTIAL_URI_PATH, exchange -> respond(exchange, 200, "{\"accountId\":\"benchmark\"}"));
+        server.createContext("/" + SEARCH_URI_PATH, this::search);
+        server.start();
+    }
+
+    String getUri()
+    {
+        return String.format("http://localhost:%d/", server.getAddress().getPort());
+    }
+
+    long getSearches()
+    {
+        return searches.get();
+    }
+
+    long getThrottled()
+    {
+        return throttled.get();
+    }
+
+    long getBytesSent()
+    {
+        return bytesSent.get();
+    }
+
+    /*
+     * Time from receiving a search request to sending the last byte of its page, in nanoseconds
+     * */
+    List<Long> getPageNanos()
+    {
+        synchronized (pageNanos) {
+            return new ArrayList<>(pageNanos);
+        }
+    }
+
+    private void search(final HttpExchange exchange) throws IOException
+    {
+        final long started = System.nanoTime();
+        final long count = searches.incrementAndGet();
+        if (settings.throttleEvery > 0 && count % settings.throttleEvery == 0) {
+            throttled.incrementAndGet();
+            exchange.getResponseHeaders().add("Retry-After", String.valueOf(settings.retryAfterSeconds));
+            respond(exchange, 429, "{\"errorMessages\":[\"Rate limit exceeded\"]}");
+            return;
+        }
+        final JsonObject request;
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            request = new JsonParser().parse(reader).getAsJsonObject();
+        }
+        final String jql = request.has("jql") ? request.get("jql").getAsString() : "";
+        final int first = Math.max(0, idBound(jql, ID_FROM, 0));
+        final int last = Math.min(settings.issues, idBound(jql, ID_TO, settings.issues));
+        final boolean descending = jql.contains("ORDER BY id DESC");
+        final JsonElement token = request.get("nextPageToken");
+        final int startAt = token == null ? first : Integer.parseInt(token.getAsString().substring(PAGE_TOKEN_PREFIX.length()));
+        final int maxResults = Math.min(settings.pageSize, request.has("maxResults") ? request.get("maxResults").getAsInt() : 50);
+        final int endAt = Math.min(last, startAt + maxResults);
+
+        final JsonArray issues = new JsonArray();
+        for (int i = startAt; i < endAt; i++) {
+            issues.add(createIssue(descending ? first + last - 1 - i : i));
+        }
+        final JsonObject page = new JsonObject();
+        page.addProperty("maxResults", maxResults);
+        page.add("issues", issues);
+        if (endAt < last) {
+            page.addProperty("nextPageToken", PAGE_TOKEN_PREFIX + endAt);
+        }
+        sleep(settings.latencyMillis);
+        respond(exchange, 200, page.toString());
+        pageNanos.add(System.nanoTime() - started);
+    }
+
+    private JsonObject createIssue(final int index)
+    {
+        final JsonObject status = new JsonObject();
+        status.addProperty("id", String.valueOf(index % 5));
+        status.addProperty("name", "Status " + index % 5);
+        final JsonObject fields = new JsonObject();
+        fields.addProperty("summary", "Synthetic issue " + index);
+        fields.add("status", status);
+        final String timestamp = String.format("2019-%02d-%02dT%02d:%02d:00.000+0000", index % 12 + 1, index % 28 + 1, index % 24, index % 60);
+        fields.addProperty("created", timestamp);
+        fields.addProperty("updated", timestamp);
+        for (int field = 0; field < settings.customFields; field++) {
+            fields.addProperty(customField(field), "Value " + field + " of issue " + index);
+        }
+        final JsonObject issue = new JsonObject();
+        issue.addProperty("id", String.valueOf(FIRST_ID + index));
+        issue.addProperty("key", "BENCH-" + (index + 1));
+        issue.addProperty("self", getUri() + "rest/api/latest/issue/" + (FIRST_ID + index));
+        issue.add("fields", fields);
+        return issue;
+    }
+
+    /*
+     * The index of the issue bounding the ids in the JQL
+     * */
+    private static int idBound(final String jql, final Pattern pattern, final int defaultIndex)
+    {
+        final Matcher matcher = pattern.matcher(jql);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) - FIRST_ID : defaultIndex;
+    }
+
+    static String customField(final int field)
+    {
+        return "customfield_" + (10000 + field);
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (settings.compress && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+        bytesSent.addAndGet(bytes.length);
+    }
+
+    private static void sleep(final long millis)
+    {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,122 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonObject;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.util.RecordPlan;
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.embulk.input.jira.BenchmarkPages.ISSUES_PER_PAGE;
+
+/*
+ * Building records from the issues of a search page, measured per record
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordBenchmark
+{
+    @Param({"SMALL", "WIDE", "CHANGELOG"})
+    public BenchmarkPages.Shape shape;
+
+    private List<Issue> issues;
+    private List<JsonObject> issueObjects;
+    private String[] paths;
+    private RecordPlan recordPlan;
+    private PageBuilder pageBuilder;
+
+    @Setup
+    public void setUp()
+    {
+        final PluginTask task = BenchmarkPages.task(shape);
+        final Schema schema = task.getColumns().toSchema();
+        issues = BenchmarkPages.issues(shape);
+        // An empty path resolves to the whole issue
+        issueObjects = issues.stream().map(issue -> issue.getValue(new String[0]).getAsJsonObject()).collect(Collectors.toList());
+        paths = schema.getColumns().stream().map(Column::getName).toArray(String[]::new);
+        recordPlan = new RecordPlan(schema, task);
+        pageBuilder = new PageBuilder(new EmbulkTestRuntime().getBufferAllocator(), schema, new DiscardingPageOutput());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        pageBuilder.close();
+    }
+
+    // Looking up every column of the schema by its dotted path
+    @Benchmark
+    @OperationsPerInvocation(ISSUES_PER_PAGE)
+    public void getValue(final Blackhole blackhole)
+    {
+        for (final Issue issue : issues) {
+            for (final String path : paths) {
+                blackhole.consume(issue.getValue(path));
+            }
+        }
+    }
+
+    // Flattening as guess does, on fresh issues since the result is cached
+    @Benchmark
+    @OperationsPerInvocation(ISSUES_PER_PAGE)
+    public void getFlatten(final Blackhole blackhole)
+    {
+        for (final JsonObject issueObject : issueObjects) {
+            blackhole.consume(new Issue(issueObject).getFlatten(true));
+        }
+    }
+
+    // Converting every column and writing the record to the page
+    @Benchmark
+    @OperationsPerInvocation(ISSUES_PER_PAGE)
+    public void addRecord()
+    {
+        for (final Issue issue : issues) {
+            recordPlan.addRecord(issue, pageBuilder);
+        }
+    }
+
+    private static final class DiscardingPageOutput implements PageOutput
+    {
+        @Override
+        public void add(final Page page)
+        {
+            page.release();
+        }
+
+        @Override
+        public void finish()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonParser;
+import org.embulk.input.jira.client.JiraClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import static org.embulk.input.jira.BenchmarkPages.ISSUES_PER_PAGE;
+
+/*
+ * Reading a search page, measured per issue
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchPageBenchmark
+{
+    @Param({"SMALL", "WIDE", "CHANGELOG"})
+    public BenchmarkPages.Shape shape;
+
+    private String page;
+
+    @Setup
+    public void setUp()
+    {
+        page = BenchmarkPages.searchResponse(shape);
+    }
+
+    // Parsing alone, as the whole page into a tree
+    @Benchmark
+    @OperationsPerInvocation(ISSUES_PER_PAGE)
+    public void parsePage(final Blackhole blackhole)
+    {
+        blackhole.consume(new JsonParser().parse(page));
+    }
+
+    // Streaming the issues and merging their fields, as searchIssues does
+    @Benchmark
+    @OperationsPerInvocation(ISSUES_PER_PAGE)
+    public String parseSearchResponse(final Blackhole blackhole) throws IOException
+    {
+        return JiraClient.parseSearchResponse(new StringReader(page), blackhole::consume);
+    }
+}
@@ -0,0 +1,66 @@
+package org.embulk.input.jira;
+
+import org.embulk.input.jira.util.JiraUtil;
+import org.embulk.util.timestamp.TimestampFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.embulk.input.jira.Constant.DEFAULT_TIMESTAMP_PATTERN;
+
+/*
+ * Parsing the timestamps of JIRA with java.time and with the generic formatter of Embulk, measured per value
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimestampBenchmark
+{
+    private static final int VALUES = 100;
+
+    private final String[] values = new String[VALUES];
+    private TimestampFormatter formatter;
+
+    @Setup
+    public void setUp()
+    {
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = String.format("2019-%02d-%02dT%02d:%02d:00.%03d+0900", i % 12 + 1, i % 28 + 1, i % 24, i % 60, i);
+        }
+        formatter = TimestampFormatter.builder(DEFAULT_TIMESTAMP_PATTERN, true)
+                .setDefaultZoneFromString("UTC")
+                .build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void parseJiraTimestamp(final Blackhole blackhole)
+    {
+        for (final String value : values) {
+            blackhole.consume(JiraUtil.parseJiraTimestamp(value));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void parseWithFormatter(final Blackhole blackhole)
+    {
+        for (final String value : values) {
+            blackhole.consume(formatter.parse(value));
+        }
+    }
+}
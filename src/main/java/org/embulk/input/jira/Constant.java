@@ -1,17 +1,33 @@
 package org.embulk.input.jira;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public final class Constant
 {
     public static final int MIN_RESULTS = 1;
-    public static final int GUESS_RECORDS_COUNT = 50;
     public static final int PREVIEW_RECORDS_COUNT = 10;
     public static final int GUESS_BUFFER_SIZE = 5 * 1024 * 1024;
     public static final int HTTP_TIMEOUT = 300 * 1000;
 
     public static final String DEFAULT_TIMESTAMP_PATTERN = "%Y-%m-%dT%H:%M:%S.%L%z";
+    public static final String JQL_DATE_PATTERN = "yyyy-MM-dd HH:mm";
+
+    public static final List<String> ALL_FIELDS = Collections.singletonList("*all");
+    // Top-level attributes of an issue which are not fields
+    public static final List<String> ISSUE_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList("id", "key", "self", "expand"));
 
     public static final String CREDENTIAL_URI_PATH = "rest/api/latest/myself";
     public static final String SEARCH_URI_PATH = "rest/api/latest/search/jql";
+    public static final String APPROXIMATE_COUNT_URI_PATH = "rest/api/latest/search/approximate-count";
+    public static final String BULK_FETCH_URI_PATH = "rest/api/latest/issue/bulkfetch";
+    // The most issues JIRA returns per bulk fetch
+    public static final int BULK_FETCH_MAX_ISSUES = 100;
+    public static final String ISSUE_CHANGELOG_URI_PATH = "rest/api/latest/issue/{issueKey}/changelog";
+    public static final String ISSUE_COMMENT_URI_PATH = "rest/api/latest/issue/{issueKey}/comment";
+    public static final String ISSUE_WORKLOG_URI_PATH = "rest/api/latest/issue/{issueKey}/worklog";
+    public static final int ISSUE_RESOURCE_PAGE_SIZE = 100;
 
     private Constant(){}
 }
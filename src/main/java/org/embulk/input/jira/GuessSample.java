@@ -0,0 +1,230 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.util.ChangelogItems;
+import org.embulk.input.jira.util.DeletedIssues;
+import org.embulk.input.jira.util.JiraUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/*
+ * Collect the columns of the guessed schema while the issues are read, flattening each issue once and keeping none of them.
+ * Per column, a few values of each shape are kept, so that SchemaGuess still sees the variety within a shape
+ * (i.e. the day and month order of dates) without being given every repeated value
+ * */
+final class GuessSample implements Consumer<Issue>
+{
+    private static final int MAX_VALUES_PER_SHAPE = 8;
+    // Bounds the values kept for free text columns, whose values hardly share a shape
+    private static final int MAX_VALUES_PER_COLUMN = 256;
+    // Runs of letters up to this length are part of the shape, so that i.e. "true" and "Bug" differ
+    private static final int MAX_LITERAL_LETTERS = 5;
+
+    private final boolean expandJsonOnGuess;
+    private final RecordMode recordMode;
+    private final SortedMap<String, Column> columns = new TreeMap<>();
+    private long issues;
+    private long rows;
+
+    GuessSample(final PluginTask task)
+    {
+        this.expandJsonOnGuess = task.getExpandJsonOnGuess();
+        this.recordMode = task.getRecordMode();
+    }
+
+    @Override
+    public void accept(final Issue issue)
+    {
+        issues++;
+        switch (recordMode) {
+        case CHANGELOG_ITEMS:
+            ChangelogItems.forEach(issue, this::addRow);
+            break;
+        case DELETED_ISSUES:
+            // Rows are the tombstones of issues, whatever fields the issues have
+            addRow(DeletedIssues.createRow(issue.getValue("id"), DeletedIssues.now()));
+            break;
+        default:
+            addRow(issue);
+            break;
+        }
+    }
+
+    private void addRow(final Issue row)
+    {
+        rows++;
+        for (final Entry<String, JsonElement> entry : row.getFlatten(expandJsonOnGuess).entrySet()) {
+            columns.computeIfAbsent(entry.getKey(), key -> new Column()).add(entry.getValue());
+        }
+    }
+
+    long getIssues()
+    {
+        return issues;
+    }
+
+    long getRows()
+    {
+        return rows;
+    }
+
+    int getColumnCount()
+    {
+        return columns.size();
+    }
+
+    /*
+     * Records for SchemaGuess. The n-th record holds the n-th kept value of every column, cycling through the values of the columns having fewer.
+     * A column which some rows do not have gets a null too, as the missing values used to be null in the unified records
+     * */
+    List<LinkedHashMap<String, Object>> toRecords()
+    {
+        int size = 0;
+        final List<List<JsonElement>> values = new ArrayList<>();
+        for (final Column column : columns.values()) {
+            final List<JsonElement> columnValues = new ArrayList<>();
+            column.values.values().forEach(columnValues::addAll);
+            if (column.present < rows && !column.values.containsKey(shape(JsonNull.INSTANCE))) {
+                columnValues.add(JsonNull.INSTANCE);
+            }
+            values.add(columnValues);
+            size = Math.max(size, columnValues.size());
+        }
+        final List<LinkedHashMap<String, Object>> records = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            final JsonObject unified = new JsonObject();
+            int index = 0;
+            for (final String key : columns.keySet()) {
+                final List<JsonElement> columnValues = values.get(index++);
+                unified.add(key, columnValues.get(i % columnValues.size()));
+            }
+            records.add(JiraUtil.toLinkedHashMap(unified));
+        }
+        return records;
+    }
+
+    /*
+     * Values of the same shape are guessed as the same type. Runs of digits and long runs of letters are collapsed,
+     * so that i.e. all the timestamps of a format share a shape
+     * */
+    static String shape(final JsonElement value)
+    {
+        if (value.isJsonNull()) {
+            return "null";
+        }
+        if (value.isJsonObject()) {
+            return "{}";
+        }
+        if (value.isJsonArray()) {
+            return "[]";
+        }
+        final String string = value.getAsString();
+        final StringBuilder shape = new StringBuilder();
+        int i = 0;
+        while (i < string.length()) {
+            final char c = string.charAt(i);
+            int end = i + 1;
+            if (Character.isDigit(c)) {
+                while (end < string.length() && Character.isDigit(string.charAt(end))) {
+                    end++;
+                }
+                shape.append('9');
+            }
+            else if (Character.isLetter(c)) {
+                while (end < string.length() && Character.isLetter(string.charAt(end))) {
+                    end++;
+                }
+                if (end - i > MAX_LITERAL_LETTERS) {
+                    shape.append('a');
+                }
+                else {
+                    shape.append(string, i, end).append('\'');
+                }
+            }
+            else {
+                shape.append(c);
+            }
+            i = end;
+        }
+        return shape.toString();
+    }
+
+    private static final class Column
+    {
+        // By shape, in the order they are met
+        private final Map<String, List<JsonElement>> values = new LinkedHashMap<>();
+        // Fixed, so that the same issues always give the same guess
+        private final Random random = new Random(0);
+        private int size;
+        private long present;
+
+        void add(final JsonElement value)
+        {
+            present++;
+            final String shape = shape(value);
+            final List<JsonElement> shapeValues = values.get(shape);
+            if (shapeValues != null) {
+                if (shapeValues.size() < MAX_VALUES_PER_SHAPE && size < MAX_VALUES_PER_COLUMN) {
+                    shapeValues.add(value);
+                    size++;
+                }
+                return;
+            }
+            // A new shape always tells more than another value of a known shape
+            if (size >= MAX_VALUES_PER_COLUMN && !removeFromLargestShape() && !removeRandomShape()) {
+                return;
+            }
+            values.put(shape, new ArrayList<>(Collections.singletonList(value)));
+            size++;
+        }
+
+        private boolean removeFromLargestShape()
+        {
+            List<JsonElement> largest = null;
+            for (final List<JsonElement> shapeValues : values.values()) {
+                if (largest == null || shapeValues.size() > largest.size()) {
+                    largest = shapeValues;
+                }
+            }
+            if (largest == null || largest.size() < 2) {
+                return false;
+            }
+            largest.remove(largest.size() - 1);
+            size--;
+            return true;
+        }
+
+        /*
+         * Every value kept has a shape of its own, i.e. free text. Replace them as a reservoir sample,
+         * so that the values met late are as likely to be kept as the first ones
+         * */
+        private boolean removeRandomShape()
+        {
+            final long index = (long) (random.nextDouble() * present);
+            if (index >= size) {
+                return false;
+            }
+            final Iterator<String> shapes = values.keySet().iterator();
+            for (long i = 0; i < index; i++) {
+                shapes.next();
+            }
+            shapes.next();
+            shapes.remove();
+            size--;
+            return true;
+        }
+    }
+}
@@ -18,49 +18,125 @@ import java.util.stream.StreamSupport;
 public class Issue
 {
     private JsonObject flatten;
+    // Either the JSON object of the issue, or its values by the slots of keys as read from a search page
     private final JsonObject json;
+    private final IssueKeys issueKeys;
+    private JsonElement[] values;
 
     public Issue(final JsonObject original)
     {
         this.json = original;
+        this.issueKeys = null;
+        this.values = null;
+    }
+
+    /*
+     * The values are indexed by the slots of the keys, a missing or null entry being an attribute the issue does not have
+     * */
+    public Issue(final IssueKeys issueKeys, final JsonElement[] values)
+    {
+        this.json = null;
+        this.issueKeys = issueKeys;
+        this.values = values;
     }
 
     public JsonElement getValue(final String path)
     {
-        final List<String> keys = new ArrayList<>(Arrays.asList(path.split("\\.")));
-        return get(json, keys);
+        return getValue(path.split("\\."));
+    }
+
+    /*
+     * Resolve a path which is already split into keys.
+     * When an array is met, the rest of the path is resolved on each element of the array
+     * */
+    public JsonElement getValue(final String[] keys)
+    {
+        if (keys.length == 0) {
+            return toJson();
+        }
+        JsonElement current = getAttribute(keys[0]);
+        for (int i = 1; i < keys.length; i++) {
+            if (current == null || current.isJsonNull()) {
+                return JsonNull.INSTANCE;
+            }
+            if (current.isJsonArray()) {
+                return getArrayValue(current.getAsJsonArray(), keys, i);
+            }
+            current = current.getAsJsonObject().get(keys[i]);
+        }
+        return current == null ? JsonNull.INSTANCE : current;
     }
 
-    private JsonElement get(final JsonElement json, final List<String> keys)
+    private JsonElement getAttribute(final String name)
     {
-        if (json == null || json.isJsonNull()) {
-            return JsonNull.INSTANCE;
+        if (json != null) {
+            return json.get(name);
         }
-        else if (keys.isEmpty() || (json.isJsonArray() && json.getAsJsonArray().size() == 0)) {
+        final JsonElement[] current = values;
+        final int slot = issueKeys.indexOf(name);
+        return slot < 0 || slot >= current.length ? null : current[slot];
+    }
+
+    /*
+     * The issue as one JSON object. Built on each call for issues read from a search page, which only guess and tests need
+     * */
+    public synchronized JsonObject toJson()
+    {
+        if (json != null) {
             return json;
         }
-        final String key = keys.get(0);
-        keys.remove(0);
-        if (json.isJsonArray()) {
-            final JsonArray arrays = new JsonArray();
-            for (final JsonElement elem : json.getAsJsonArray()) {
-                if (elem.isJsonObject()) {
-                    arrays.add(elem.getAsJsonObject().get(key));
-                }
-                else {
-                    arrays.add(elem);
+        final JsonObject object = new JsonObject();
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                object.add(issueKeys.name(slot), values[slot]);
+            }
+        }
+        return object;
+    }
+
+    private static JsonElement getArrayValue(final JsonArray array, final String[] keys, final int from)
+    {
+        if (array.size() == 0) {
+            return array;
+        }
+        final JsonArray values = new JsonArray();
+        for (final JsonElement element : array) {
+            // Elements which are not objects are kept as they are
+            JsonElement value = element;
+            for (int i = from; i < keys.length && value.isJsonObject(); i++) {
+                value = value.getAsJsonObject().get(keys[i]);
+                if (value == null) {
+                    value = JsonNull.INSTANCE;
                 }
             }
-            return get(arrays, keys);
+            values.add(value);
+        }
+        return values;
+    }
+
+    /*
+     * Replace a top-level attribute, i.e. with the complete data of a resource truncated in search results
+     * */
+    public synchronized void setValue(final String key, final JsonElement value)
+    {
+        if (json != null) {
+            json.add(key, value);
+        }
+        else {
+            final int slot = issueKeys.slot(key);
+            if (slot >= values.length) {
+                values = Arrays.copyOf(values, slot + 1);
+            }
+            values[slot] = value;
         }
-        return get(json.getAsJsonObject().get(key), keys);
+        flatten = null;
     }
 
     public synchronized JsonObject getFlatten(final boolean expandJsonOnGuess)
     {
         if (flatten == null) {
             flatten = new JsonObject();
-            manipulatingFlattenJson(json, "", expandJsonOnGuess);
+            manipulatingFlattenJson(toJson(), "", expandJsonOnGuess);
         }
         return flatten;
     }
@@ -0,0 +1,119 @@
+package org.embulk.input.jira;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.embulk.config.ConfigException;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.client.JiraClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.embulk.input.jira.Constant.BULK_FETCH_MAX_ISSUES;
+
+/*
+ * Load a known list of issues from the bulk fetch endpoint instead of searching them, in batches fetched on a bounded pool of threads.
+ * Batches are passed on in the order of the list, holding at most two batches per thread
+ * */
+final class IssueBulkFetcher implements AutoCloseable
+{
+    private final JiraClient jiraClient;
+    private final PluginTask task;
+    private final List<String> fields;
+    private final ExecutorService executor;
+    private final int maxPending;
+
+    IssueBulkFetcher(final JiraClient jiraClient, final PluginTask task, final List<String> fields)
+    {
+        this.jiraClient = jiraClient;
+        this.task = task;
+        this.fields = fields;
+        this.maxPending = task.getBulkFetchThreads() * 2;
+        this.executor = Executors.newFixedThreadPool(task.getBulkFetchThreads(), new ThreadFactoryBuilder()
+                .setNameFormat("embulk-input-jira-bulk-fetch-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    static boolean isEnabled(final PluginTask task)
+    {
+        return !task.getIssueKeys().isEmpty() || task.getIssueIdsFile().isPresent();
+    }
+
+    /*
+     * The ids and keys of issue_keys followed by those of issue_ids_file, one per line, without duplicates.
+     * Blank lines and lines starting with # are skipped
+     * */
+    static List<String> loadIssueIdsOrKeys(final PluginTask task)
+    {
+        final Set<String> issueIdsOrKeys = new LinkedHashSet<>();
+        task.getIssueKeys().stream().map(String::trim).filter(key -> !key.isEmpty()).forEach(issueIdsOrKeys::add);
+        if (task.getIssueIdsFile().isPresent()) {
+            try {
+                for (final String line : Files.readAllLines(Paths.get(task.getIssueIdsFile().get()), StandardCharsets.UTF_8)) {
+                    final String issueIdOrKey = line.trim();
+                    if (!issueIdOrKey.isEmpty() && !issueIdOrKey.startsWith("#")) {
+                        issueIdsOrKeys.add(issueIdOrKey);
+                    }
+                }
+            }
+            catch (final IOException e) {
+                throw new ConfigException(String.format("Could not read issue_ids_file %s", task.getIssueIdsFile().get()), e);
+            }
+        }
+        return new ArrayList<>(issueIdsOrKeys);
+    }
+
+    /*
+     * Pass every issue found to the consumer, batch after batch
+     * */
+    void fetchAll(final List<String> issueIdsOrKeys, final Consumer<Issue> consumer)
+    {
+        final Deque<Future<List<Issue>>> pending = new ArrayDeque<>();
+        for (int from = 0; from < issueIdsOrKeys.size(); from += BULK_FETCH_MAX_ISSUES) {
+            final List<String> batch = issueIdsOrKeys.subList(from, Math.min(issueIdsOrKeys.size(), from + BULK_FETCH_MAX_ISSUES));
+            pending.add(executor.submit(() -> jiraClient.fetchIssues(task, batch, fields)));
+            while (pending.size() >= maxPending) {
+                getResult(pending.poll()).forEach(consumer);
+            }
+        }
+        while (!pending.isEmpty()) {
+            getResult(pending.poll()).forEach(consumer);
+        }
+    }
+
+    private static List<Issue> getResult(final Future<List<Issue>> future)
+    {
+        try {
+            return future.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,156 @@
+package org.embulk.input.jira;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.client.JiraClient;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/*
+ * Complete the data which search results truncate, with extra requests per issue run on a bounded pool of threads.
+ * Issues are passed on in the order they were received, holding at most one page of them
+ * */
+final class IssueEnricher implements Consumer<Issue>, AutoCloseable
+{
+    private final JiraClient jiraClient;
+    private final PluginTask task;
+    private final Consumer<Issue> downstream;
+    private final boolean fetchFullChangelog;
+    private final List<Subresource> subresources;
+    private final ExecutorService executor;
+    private final Deque<Future<Issue>> pending = new ArrayDeque<>();
+    private final int maxPending;
+
+    IssueEnricher(final JiraClient jiraClient, final PluginTask task, final Consumer<Issue> downstream)
+    {
+        this.jiraClient = jiraClient;
+        this.task = task;
+        this.downstream = downstream;
+        this.fetchFullChangelog = task.getFetchFullChangelog();
+        this.subresources = task.getFetchSubresources();
+        this.maxPending = Math.max(1, task.getMaxResults());
+        if (fetchFullChangelog || !subresources.isEmpty()) {
+            this.executor = Executors.newFixedThreadPool(task.getSubresourceThreads(), new ThreadFactoryBuilder()
+                    .setNameFormat("embulk-input-jira-subresource-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        else {
+            this.executor = null;
+        }
+    }
+
+    @Override
+    public void accept(final Issue issue)
+    {
+        if (executor == null) {
+            downstream.accept(issue);
+            return;
+        }
+        if (isTruncated(issue)) {
+            pending.add(executor.submit(() -> fetchTruncated(issue)));
+        }
+        else {
+            pending.add(CompletableFuture.completedFuture(issue));
+        }
+        while (pending.size() > maxPending) {
+            downstream.accept(getResult(pending.poll()));
+        }
+    }
+
+    /*
+     * Pass on the issues still waiting for their requests
+     * */
+    void flush()
+    {
+        while (!pending.isEmpty()) {
+            downstream.accept(getResult(pending.poll()));
+        }
+    }
+
+    private boolean isTruncated(final Issue issue)
+    {
+        if (fetchFullChangelog && isTruncated(issue, "changelog", "histories")) {
+            return true;
+        }
+        for (final Subresource subresource : subresources) {
+            if (isTruncated(issue, subresource.getField(), subresource.getValuesKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Issue fetchTruncated(final Issue issue)
+    {
+        final String issueKey = issue.getValue("key").getAsString();
+        if (fetchFullChangelog && isTruncated(issue, "changelog", "histories")) {
+            setValues(issue, "changelog", "histories", jiraClient.getChangelogHistories(task, issueKey));
+        }
+        for (final Subresource subresource : subresources) {
+            if (isTruncated(issue, subresource.getField(), subresource.getValuesKey())) {
+                setValues(issue, subresource.getField(), subresource.getValuesKey(), jiraClient.getSubresources(task, subresource, issueKey));
+            }
+        }
+        return issue;
+    }
+
+    /*
+     * The embedded resources are truncated when there are less values than their total
+     * */
+    private static boolean isTruncated(final Issue issue, final String field, final String valuesKey)
+    {
+        final JsonElement total = issue.getValue(field + ".total");
+        final JsonElement values = issue.getValue(field + "." + valuesKey);
+        if (!total.isJsonPrimitive() || !issue.getValue("key").isJsonPrimitive()) {
+            return false;
+        }
+        return total.getAsInt() > (values.isJsonArray() ? values.getAsJsonArray().size() : 0);
+    }
+
+    private static void setValues(final Issue issue, final String field, final String valuesKey, final JsonArray values)
+    {
+        final JsonObject resource = new JsonObject();
+        resource.addProperty("startAt", 0);
+        resource.addProperty("maxResults", values.size());
+        resource.addProperty("total", values.size());
+        resource.add(valuesKey, values);
+        issue.setValue(field, resource);
+    }
+
+    private static Issue getResult(final Future<Issue> future)
+    {
+        try {
+            return future.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
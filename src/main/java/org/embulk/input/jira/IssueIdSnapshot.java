@@ -0,0 +1,174 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonElement;
+import org.embulk.config.ConfigException;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * The ids of the issues matching the JQL, kept in id_snapshot_file between runs of record_mode deleted_issues.
+ * The ids are stored sorted, as gzipped variable-length deltas, so that a million issues take a few hundred kilobytes.
+ * The snapshot of a run is written next to the file and replaces it once the transaction is committed
+ * */
+final class IssueIdSnapshot implements Consumer<Issue>
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(IssueIdSnapshot.class);
+    private static final int MAGIC = 0x4a495331;
+    private static final String NEXT_SUFFIX = ".next";
+
+    private final Path path;
+    private long[] ids = new long[1024];
+    private int size;
+
+    private IssueIdSnapshot(final Path path)
+    {
+        this.path = path;
+    }
+
+    static IssueIdSnapshot of(final PluginTask task)
+    {
+        return new IssueIdSnapshot(Paths.get(task.getIdSnapshotFile()
+                .orElseThrow(() -> new ConfigException("id_snapshot_file is required when record_mode is deleted_issues"))));
+    }
+
+    @Override
+    public void accept(final Issue issue)
+    {
+        final JsonElement id = issue.getValue("id");
+        if (!id.isJsonPrimitive()) {
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = id.getAsLong();
+    }
+
+    /*
+     * The ids read so far, sorted without duplicates. An issue updated while the pages are read may be met twice
+     * */
+    long[] getIds()
+    {
+        final long[] sorted = Arrays.copyOf(ids, size);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, unique);
+    }
+
+    /*
+     * The ids of the last committed run, or null on the first run
+     * */
+    long[] loadPrevious()
+    {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            if (input.readInt() != MAGIC) {
+                throw new ConfigException(String.format("%s is not an id snapshot", path));
+            }
+            final long[] previous = new long[input.readInt()];
+            long id = 0;
+            for (int i = 0; i < previous.length; i++) {
+                id += readVarLong(input);
+                previous[i] = id;
+            }
+            return previous;
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(String.format("Could not read the id snapshot %s", path), e);
+        }
+    }
+
+    /*
+     * Write the ids of this run, to be committed with the transaction
+     * */
+    void saveNext(final long[] sortedIds)
+    {
+        final Path next = getNextPath(path);
+        try {
+            final Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(next))))) {
+                output.writeInt(MAGIC);
+                output.writeInt(sortedIds.length);
+                long previous = 0;
+                for (final long id : sortedIds) {
+                    writeVarLong(output, id - previous);
+                    previous = id;
+                }
+            }
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(String.format("Could not write the id snapshot %s", next), e);
+        }
+    }
+
+    /*
+     * Replace the snapshot by the one of the committed run
+     * */
+    static void commit(final PluginTask task)
+    {
+        final Path path = Paths.get(task.getIdSnapshotFile().get());
+        final Path next = getNextPath(path);
+        try {
+            if (Files.exists(next)) {
+                Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        catch (final IOException e) {
+            LOGGER.warn(String.format("Could not replace the id snapshot %s, the next run detects deletions against the previous one", path), e);
+        }
+    }
+
+    private static Path getNextPath(final Path path)
+    {
+        return path.resolveSibling(path.getFileName() + NEXT_SUFFIX);
+    }
+
+    private static void writeVarLong(final DataOutputStream output, final long value) throws IOException
+    {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            output.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        output.writeByte((int) remaining);
+    }
+
+    private static long readVarLong(final DataInputStream input) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length id");
+    }
+}
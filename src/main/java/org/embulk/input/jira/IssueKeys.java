@@ -0,0 +1,60 @@
+package org.embulk.input.jira;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Top-level attribute names shared by the issues of a search page, each issue holding only an array of values by slot.
+ * Slots are added by the thread reading the page while the issues read before are being written by others
+ * */
+public final class IssueKeys
+{
+    private final ConcurrentHashMap<String, Integer> slots = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private int size;
+
+    public IssueKeys(final String... names)
+    {
+        for (final String name : names) {
+            slot(name);
+        }
+    }
+
+    /*
+     * The slot of the name, added when it is new
+     * */
+    public synchronized int slot(final String name)
+    {
+        final Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = name;
+        names = current;
+        slots.put(name, size);
+        return size++;
+    }
+
+    /*
+     * The slot of the name, or -1 when no issue has it
+     * */
+    public int indexOf(final String name)
+    {
+        final Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public String name(final int slot)
+    {
+        return names[slot];
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+}
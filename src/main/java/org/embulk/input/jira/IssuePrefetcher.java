@@ -0,0 +1,142 @@
+package org.embulk.input.jira;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.client.JiraClient;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/*
+ * Fetch the pages of a search in a background thread while the task thread builds the pages of records.
+ * Issues are handed over through a bounded queue, so at most the configured number of pages are held ahead.
+ * A search split into several JQLs is fetched by one thread per JQL, each following its own chain of page tokens
+ * */
+final class IssuePrefetcher implements AutoCloseable
+{
+    // Marks the end of the search, successful or not
+    private static final Item END = new Item(null, null);
+
+    private final JiraClient jiraClient;
+    private final PluginTask task;
+    private final List<String> jqls;
+    private final List<String> fields;
+    private final String startPageToken;
+    private final BlockingQueue<Item> queue;
+    private final ExecutorService executor;
+    private volatile Throwable error;
+
+    /*
+     * The start page token is the one of a resumed search, which is never split
+     * */
+    IssuePrefetcher(final JiraClient jiraClient, final PluginTask task, final List<String> jqls, final List<String> fields, final String startPageToken)
+    {
+        this.jiraClient = jiraClient;
+        this.task = task;
+        this.jqls = jqls;
+        this.fields = fields;
+        this.startPageToken = jqls.size() == 1 ? startPageToken : null;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, task.getPrefetchPages()) * Math.max(1, task.getMaxResults()) * jqls.size());
+        this.executor = Executors.newFixedThreadPool(jqls.size(), new ThreadFactoryBuilder()
+                .setNameFormat("embulk-input-jira-prefetch-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    void start()
+    {
+        for (final String jql : jqls) {
+            executor.execute(() -> {
+                try {
+                    jiraClient.searchAllIssues(task, jql, fields, startPageToken,
+                            issue -> put(new Item(issue, null)),
+                            nextPageToken -> put(new Item(null, nextPageToken)));
+                }
+                catch (final Throwable e) {
+                    error = e;
+                }
+                finally {
+                    put(END);
+                }
+            });
+        }
+    }
+
+    /*
+     * Pass every fetched issue to the consumer in order, as well as the ends of pages,
+     * and rethrow the error of a fetcher if any. The issues of several chains are interleaved
+     * */
+    void drainTo(final Consumer<Issue> consumer, final Consumer<String> pageFinished)
+    {
+        int running = jqls.size();
+        while (running > 0) {
+            final Item item;
+            try {
+                item = queue.take();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            if (item == END) {
+                running--;
+                if (error != null) {
+                    break;
+                }
+                continue;
+            }
+            if (item.issue != null) {
+                consumer.accept(item.issue);
+            }
+            else {
+                pageFinished.accept(item.nextPageToken);
+            }
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new RuntimeException(error);
+        }
+    }
+
+    private void put(final Item item)
+    {
+        try {
+            queue.put(item);
+        }
+        catch (final InterruptedException e) {
+            // The task thread has stopped consuming, see close()
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+
+    /*
+     * Either an issue or the end of a page with the token of the following page
+     * */
+    private static final class Item
+    {
+        private final Issue issue;
+        private final String nextPageToken;
+
+        private Item(final Issue issue, final String nextPageToken)
+        {
+            this.issue = issue;
+            this.nextPageToken = nextPageToken;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonElement;
+import org.embulk.config.TaskReport;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.util.ChangelogItems;
+import org.embulk.input.jira.util.JiraUtil;
+import org.embulk.input.jira.util.RecordPlan;
+import org.embulk.input.jira.util.TaskMetrics;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
+
+import java.util.function.Consumer;
+
+/*
+ * Write issues to the page builder as soon as JiraClient reads them,
+ * and keep track of what has been written for the task report
+ * */
+final class IssueWriter implements Consumer<Issue>
+{
+    private final PluginTask task;
+    private final RecordPlan recordPlan;
+    private final PageBuilder pageBuilder;
+    private final TaskMetrics metrics;
+    // The progress is needed by incremental loading and checkpoints only
+    private final boolean trackProgress;
+    private String lastUpdated;
+    private long lastIssueId = -1;
+
+    IssueWriter(final PluginTask task, final Schema schema, final PageBuilder pageBuilder, final TaskMetrics metrics)
+    {
+        this.task = task;
+        this.recordPlan = new RecordPlan(schema, task);
+        this.pageBuilder = pageBuilder;
+        this.metrics = metrics;
+        this.trackProgress = task.getIncremental() || task.getCheckpointDirectory().isPresent();
+    }
+
+    @Override
+    public void accept(final Issue issue)
+    {
+        final long started = System.nanoTime();
+        final long[] records = {0};
+        if (task.getRecordMode() == RecordMode.CHANGELOG_ITEMS) {
+            ChangelogItems.forEach(issue, row -> {
+                recordPlan.addRecord(row, pageBuilder);
+                records[0]++;
+            });
+        }
+        else {
+            recordPlan.addRecord(issue, pageBuilder);
+            records[0]++;
+        }
+        if (trackProgress) {
+            lastUpdated = JiraUtil.maxTimestamp(lastUpdated, issue.getValue("updated"));
+            final JsonElement id = issue.getValue("id");
+            if (id.isJsonPrimitive()) {
+                try {
+                    lastIssueId = Math.max(lastIssueId, id.getAsLong());
+                }
+                catch (final NumberFormatException e) {
+                    // Not a numeric id, only used for logging the progress
+                }
+            }
+        }
+        metrics.addIssue(records[0]);
+        metrics.addRecordBuilding(System.nanoTime() - started);
+    }
+
+    /*
+     * Continue the progress of the issues written before a restart
+     * */
+    void restore(final TaskCheckpoint checkpoint)
+    {
+        lastUpdated = JiraUtil.maxTimestamp(lastUpdated, checkpoint.getLastUpdated());
+        if (checkpoint.getLastIssueId() != null) {
+            lastIssueId = Math.max(lastIssueId, Long.parseLong(checkpoint.getLastIssueId()));
+        }
+    }
+
+    String getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    String getLastIssueId()
+    {
+        return lastIssueId < 0 ? null : Long.toString(lastIssueId);
+    }
+
+    TaskReport createTaskReport(final TaskReport taskReport)
+    {
+        if (task.getIncremental() && lastUpdated != null) {
+            taskReport.set("last_updated", lastUpdated);
+        }
+        return taskReport;
+    }
+}
@@ -1,17 +1,17 @@
 package org.embulk.input.jira;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
-import org.apache.commons.lang3.tuple.Pair;
 import org.embulk.config.ConfigDiff;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
+import org.embulk.config.DataSource;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
 import org.embulk.input.jira.client.JiraClient;
+import org.embulk.input.jira.util.DeletedIssues;
 import org.embulk.input.jira.util.JiraUtil;
+import org.embulk.input.jira.util.JqlPartitioner;
+import org.embulk.input.jira.util.TaskMetrics;
 import org.embulk.spi.Exec;
 import org.embulk.spi.InputPlugin;
 import org.embulk.spi.PageBuilder;
@@ -30,15 +30,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
-import static org.embulk.input.jira.Constant.GUESS_RECORDS_COUNT;
+import static org.embulk.input.jira.Constant.ALL_FIELDS;
 import static org.embulk.input.jira.Constant.PREVIEW_RECORDS_COUNT;
 
 public class JiraInputPlugin
@@ -82,6 +84,38 @@ public class JiraInputPlugin
         @ConfigDefault("5")
         public int getRetryLimit();
 
+        @Config("requests_per_second")
+        @ConfigDefault("10")
+        public double getRequestsPerSecond();
+
+        @Config("max_connections_per_route")
+        @ConfigDefault("10")
+        public int getMaxConnectionsPerRoute();
+
+        @Config("idle_connection_timeout_millis")
+        @ConfigDefault("60000")
+        public long getIdleConnectionTimeoutMillis();
+
+        @Config("compress_responses")
+        @ConfigDefault("true")
+        public boolean getCompressResponses();
+
+        @Config("cache_directory")
+        @ConfigDefault("null")
+        public Optional<String> getCacheDirectory();
+
+        @Config("cache_ttl_minutes")
+        @ConfigDefault("60")
+        public long getCacheTtlMinutes();
+
+        @Config("cache_max_megabytes")
+        @ConfigDefault("512")
+        public long getCacheMaxMegabytes();
+
+        @Config("prefetch_pages")
+        @ConfigDefault("1")
+        public int getPrefetchPages();
+
         @Config("max_results")
         @ConfigDefault("50")
         public int getMaxResults();
@@ -106,9 +140,104 @@ public class JiraInputPlugin
         @ConfigDefault("\"basic\"")
         public AuthenticateMethod getAuthMethod();
 
+        @Config("fetch_all_fields")
+        @ConfigDefault("false")
+        public boolean getFetchAllFields();
+
+        @Config("record_mode")
+        @ConfigDefault("\"issues\"")
+        public RecordMode getRecordMode();
+
+        @Config("id_snapshot_file")
+        @ConfigDefault("null")
+        public Optional<String> getIdSnapshotFile();
+
+        @Config("fetch_full_changelog")
+        @ConfigDefault("false")
+        public boolean getFetchFullChangelog();
+
+        @Config("fetch_subresources")
+        @ConfigDefault("[]")
+        public List<Subresource> getFetchSubresources();
+
+        @Config("subresource_threads")
+        @ConfigDefault("4")
+        public int getSubresourceThreads();
+
         @Config("expand_json_on_guess")
         @ConfigDefault("true")
         public boolean getExpandJsonOnGuess();
+
+        @Config("guess_sample_size")
+        @ConfigDefault("50")
+        public int getGuessSampleSize();
+
+        @Config("partition_by")
+        @ConfigDefault("\"none\"")
+        public PartitionBy getPartitionBy();
+
+        @Config("max_tasks")
+        @ConfigDefault("1")
+        public int getMaxTasks();
+
+        @Config("partition_created_from")
+        @ConfigDefault("null")
+        public Optional<String> getPartitionCreatedFrom();
+
+        @Config("partition_created_to")
+        @ConfigDefault("null")
+        public Optional<String> getPartitionCreatedTo();
+
+        @Config("partition_projects")
+        @ConfigDefault("[]")
+        public List<String> getPartitionProjects();
+
+        @Config("balance_partitions")
+        @ConfigDefault("false")
+        public boolean getBalancePartitions();
+
+        @Config("log_progress")
+        @ConfigDefault("false")
+        public boolean getLogProgress();
+
+        @Config("search_chains")
+        @ConfigDefault("1")
+        public int getSearchChains();
+
+        @Config("issue_keys")
+        @ConfigDefault("[]")
+        public List<String> getIssueKeys();
+
+        @Config("issue_ids_file")
+        @ConfigDefault("null")
+        public Optional<String> getIssueIdsFile();
+
+        @Config("bulk_fetch_threads")
+        @ConfigDefault("4")
+        public int getBulkFetchThreads();
+
+        @Config("checkpoint_directory")
+        @ConfigDefault("null")
+        public Optional<String> getCheckpointDirectory();
+
+        @Config("incremental")
+        @ConfigDefault("false")
+        public boolean getIncremental();
+
+        @Config("last_updated")
+        @ConfigDefault("null")
+        public Optional<String> getLastUpdated();
+
+        @Config("incremental_overlap_minutes")
+        @ConfigDefault("5")
+        public int getIncrementalOverlapMinutes();
+
+        public List<String> getPartitions();
+        public void setPartitions(List<String> partitions);
+
+        // Identifies the transaction, whose tasks share a rate limit
+        public String getRateLimiterId();
+        public void setRateLimiterId(String rateLimiterId);
     }
 
     @Override
@@ -116,11 +245,12 @@ public class JiraInputPlugin
             final InputPlugin.Control control)
     {
         final PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+        // Before the partitions are planned, which may send many counts, and saved to checkpoint_directory
+        JiraUtil.validateTaskConfig(task);
         SchemaConfig schemaConfig = task.getColumns();
         if (task.getDynamicSchema()) {
-            final JiraClient jiraClient = getJiraClient();
             final List<ColumnConfig> columns = new ArrayList<>();
-            try {
+            try (final JiraClient jiraClient = getJiraClient()) {
                 final List<ConfigDiff> guessedColumns = getGuessedColumns(jiraClient, task);
                 for (final ConfigDiff guessedColumn : guessedColumns) {
                     columns.add(new ColumnConfig(CONFIG_MAPPER_FACTORY.newConfigSource().merge(guessedColumn)));
@@ -134,18 +264,67 @@ public class JiraInputPlugin
             schemaConfig = new SchemaConfig(columns);
         }
         final Schema schema = schemaConfig.toSchema();
-        final int taskCount = 1;
+        // A run again after a failure resumes the checkpoints of the same partitions
+        final List<String> partitions = TaskCheckpoint.loadPartitions(task).orElseGet(() -> createPartitions(task));
+        TaskCheckpoint.savePartitions(task, partitions);
+        task.setPartitions(partitions);
+        task.setRateLimiterId(UUID.randomUUID().toString());
+        final int taskCount = Math.max(1, partitions.size());
+        if (taskCount > 1) {
+            LOGGER.info(String.format("Split JQL into %d partitions by %s", taskCount, task.getPartitionBy()));
+        }
 
         return resume(task.toTaskSource(), schema, taskCount, control);
     }
 
+    private List<String> createPartitions(final PluginTask task)
+    {
+        if (!task.getBalancePartitions() || task.getPartitionBy() == PartitionBy.NONE) {
+            return JqlPartitioner.createPartitions(task);
+        }
+        final String jql = JiraUtil.buildTransactionJql(task);
+        try (final JiraClient jiraClient = getJiraClient()) {
+            return JqlPartitioner.createBalancedPartitions(task,
+                    condition -> jiraClient.countIssues(task, JiraUtil.appendJqlCondition(jql, condition)));
+        }
+    }
+
     @Override
     public ConfigDiff resume(final TaskSource taskSource,
             final Schema schema, final int taskCount,
             final InputPlugin.Control control)
     {
-        control.run(taskSource, schema, taskCount);
-        return CONFIG_MAPPER_FACTORY.newConfigDiff();
+        final PluginTask task = TASK_MAPPER.map(taskSource, PluginTask.class);
+        final List<TaskReport> taskReports;
+        try {
+            taskReports = control.run(taskSource, schema, taskCount);
+        }
+        finally {
+            // cleanup is not called when a task fails, which would keep the limiter for the life of the JVM
+            JiraClient.releaseRateLimiter(task);
+        }
+        final ConfigDiff configDiff = CONFIG_MAPPER_FACTORY.newConfigDiff();
+        final List<DataSource> taskMetrics = taskReports.stream()
+                .filter(taskReport -> taskReport.has("metrics"))
+                .<DataSource>map(taskReport -> taskReport.getNested("metrics"))
+                .collect(Collectors.toList());
+        if (!taskMetrics.isEmpty()) {
+            LOGGER.info(String.format("Transaction loaded %s",
+                    TaskMetrics.describe(TaskMetrics.aggregate(taskMetrics, CONFIG_MAPPER_FACTORY.newTaskReport()))));
+        }
+        if (task.getIncremental()) {
+            // Keep the previous high-watermark when no issue has been loaded
+            String lastUpdated = task.getLastUpdated().orElse(null);
+            for (final TaskReport taskReport : taskReports) {
+                if (taskReport.has("last_updated")) {
+                    lastUpdated = JiraUtil.maxTimestamp(lastUpdated, taskReport.get(String.class, "last_updated"));
+                }
+            }
+            if (lastUpdated != null) {
+                configDiff.set("last_updated", lastUpdated);
+            }
+        }
+        return configDiff;
     }
 
     @Override
@@ -154,85 +333,254 @@ public class JiraInputPlugin
             final PageOutput output)
     {
         final PluginTask task = TASK_MAPPER.map(taskSource, PluginTask.class);
-        JiraUtil.validateTaskConfig(task);
-        final JiraClient jiraClient = getJiraClient();
-        jiraClient.checkUserCredentials(task);
         final int maxResults = task.getMaxResults();
-        try (final PageBuilder pageBuilder = getPageBuilder(schema, output)) {
-            if (isPreview()) {
-                final Pair<List<Issue>, String> result = jiraClient.searchIssues(task, null, Math.min(maxResults, PREVIEW_RECORDS_COUNT));
-                final List<Issue> issues = result.getLeft();
-                issues.forEach(issue -> JiraUtil.addRecord(issue, schema, task, pageBuilder));
+        final String jql = JiraUtil.buildTaskJql(task, taskIndex);
+        final List<String> fields = JiraUtil.buildRequestFields(task, schema);
+        try (final JiraClient jiraClient = getJiraClient();
+                final PageBuilder pageBuilder = getPageBuilder(schema, output)) {
+            JiraUtil.validateTaskConfig(task, jiraClient.getHttpClient(task));
+            jiraClient.checkUserCredentials(task);
+            final IssueWriter issueWriter = new IssueWriter(task, schema, pageBuilder, jiraClient.getMetrics());
+            try (final IssueEnricher issueEnricher = new IssueEnricher(jiraClient, task, issueWriter)) {
+                if (task.getRecordMode() == RecordMode.DELETED_ISSUES) {
+                    loadDeletedIssues(jiraClient, task, jql, fields, issueWriter);
+                }
+                else if (IssueBulkFetcher.isEnabled(task)) {
+                    loadListedIssues(jiraClient, task, fields, issueEnricher);
+                }
+                else if (isPreview()) {
+                    jiraClient.searchIssues(task, jql, fields, null, Math.min(maxResults, PREVIEW_RECORDS_COUNT), issueEnricher);
+                    issueEnricher.flush();
+                }
+                else {
+                    loadAllIssues(jiraClient, task, taskIndex, jql, fields, pageBuilder, issueWriter, issueEnricher);
+                }
+            }
+            pageBuilder.finish();
+            final TaskReport metrics = jiraClient.getMetrics().toTaskReport(CONFIG_MAPPER_FACTORY.newTaskReport());
+            LOGGER.info(String.format("Task %d loaded %s", taskIndex, TaskMetrics.describe(metrics)));
+            final TaskReport taskReport = issueWriter.createTaskReport(CONFIG_MAPPER_FACTORY.newTaskReport());
+            taskReport.setNested("metrics", metrics);
+            return taskReport;
+        }
+    }
+
+    private void loadAllIssues(final JiraClient jiraClient, final PluginTask task, final int taskIndex, final String jql, final List<String> fields,
+            final PageBuilder pageBuilder, final IssueWriter issueWriter, final IssueEnricher issueEnricher)
+    {
+        final Optional<TaskCheckpoint> checkpoint = TaskCheckpoint.load(task, taskIndex, jql, fields);
+        String startPageToken = null;
+        if (checkpoint.isPresent() && checkpoint.get().isResumed()) {
+            issueWriter.restore(checkpoint.get());
+            if (checkpoint.get().isCompleted()) {
+                LOGGER.info(String.format("Task %d has already been completed according to its checkpoint", taskIndex));
+                return;
+            }
+            LOGGER.info(String.format("Resuming task %d from its checkpoint after %d pages, up to the issue id %s",
+                    taskIndex, checkpoint.get().getPages(), checkpoint.get().getLastIssueId()));
+            startPageToken = checkpoint.get().getNextPageToken();
+        }
+        final Consumer<String> progress = createProgressLogger(jiraClient, task, taskIndex, jql);
+        final Consumer<String> pageFinished = nextPageToken -> {
+            issueEnricher.flush();
+            progress.accept(nextPageToken);
+            if (checkpoint.isPresent()) {
+                // The records must have reached the output before the page is recorded as done
+                pageBuilder.flush();
+                checkpoint.get().save(nextPageToken, issueWriter.getLastIssueId(), issueWriter.getLastUpdated());
+            }
+        };
+        final boolean[] resumed = {false};
+        final Consumer<String> resumedPageFinished = nextPageToken -> {
+            pageFinished.accept(nextPageToken);
+            resumed[0] = true;
+        };
+        final List<String> chains = createSearchChains(jiraClient, task, taskIndex, jql);
+        try {
+            if (task.getPrefetchPages() > 0 || chains.size() > 1) {
+                try (final IssuePrefetcher prefetcher = new IssuePrefetcher(jiraClient, task, chains, fields, startPageToken)) {
+                    prefetcher.start();
+                    prefetcher.drainTo(issueEnricher, resumedPageFinished);
+                }
             }
             else {
-                int currentPage = 0;
-                String nextPageToken = null;
-                do {
-                    LOGGER.info(String.format("Fetching page %d", (currentPage + 1)));
-                    final Pair<List<Issue>, String> result = jiraClient.searchIssues(task, nextPageToken, maxResults);
-                    final List<Issue> issues = result.getLeft();
-                    nextPageToken = result.getRight();
-                    issues.forEach(issue -> JiraUtil.addRecord(issue, schema, task, pageBuilder));
-                    currentPage++;
-                } while(nextPageToken != null);
+                jiraClient.searchAllIssues(task, jql, fields, startPageToken, issueEnricher, resumedPageFinished);
             }
-            pageBuilder.finish();
         }
-        return CONFIG_MAPPER_FACTORY.newTaskReport();
+        catch (final ConfigException e) {
+            // Loading from the first page again would write the issues before the checkpoint twice
+            if (startPageToken != null && !resumed[0]) {
+                throw new ConfigException(String.format("Could not resume task %d from its checkpoint %s, delete the checkpoint to load the task from the first page: %s",
+                        taskIndex, checkpoint.get().getPath(), e.getMessage()), e);
+            }
+            throw e;
+        }
     }
 
-    @Override
-    public ConfigDiff guess(final ConfigSource config)
+    /*
+     * Fetch the issues of issue_keys and issue_ids_file instead of searching the JQL
+     * */
+    private void loadListedIssues(final JiraClient jiraClient, final PluginTask task, final List<String> fields, final IssueEnricher issueEnricher)
     {
-        // Reset columns in case already have or missing on configuration
-        config.set("columns", new ArrayList<>());
-        final PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
-        JiraUtil.validateTaskConfig(task);
-        final JiraClient jiraClient = getJiraClient();
-        jiraClient.checkUserCredentials(task);
-        return CONFIG_MAPPER_FACTORY.newConfigDiff().set("columns", getGuessedColumns(jiraClient, task));
+        List<String> issueIdsOrKeys = IssueBulkFetcher.loadIssueIdsOrKeys(task);
+        if (isPreview()) {
+            issueIdsOrKeys = issueIdsOrKeys.subList(0, Math.min(issueIdsOrKeys.size(), PREVIEW_RECORDS_COUNT));
+        }
+        LOGGER.info(String.format("Fetching %d listed issues", issueIdsOrKeys.size()));
+        try (final IssueBulkFetcher bulkFetcher = new IssueBulkFetcher(jiraClient, task, fields)) {
+            bulkFetcher.fetchAll(issueIdsOrKeys, issueEnricher);
+        }
+        issueEnricher.flush();
     }
 
-    private List<ConfigDiff> getGuessedColumns(final JiraClient jiraClient, final PluginTask task)
+    /*
+     * Read the ids of all the issues matching the JQL, and write a tombstone for each id of the previous snapshot which is gone
+     * */
+    private void loadDeletedIssues(final JiraClient jiraClient, final PluginTask task, final String jql, final List<String> fields,
+            final IssueWriter issueWriter)
     {
-        final Pair<List<Issue>, String> result = jiraClient.searchIssues(task, null, GUESS_RECORDS_COUNT);
-        final List<Issue> issues = result.getLeft();
-        if (issues.isEmpty()) {
-            throw new ConfigException("Could not guess schema due to empty data set");
+        if (isPreview()) {
+            previewDeletedIssues(jiraClient, task, jql, fields, issueWriter);
+            return;
         }
-        final boolean expandJsonOnGuess = task.getExpandJsonOnGuess();
-        final List<ConfigDiff> columns = SchemaGuess.of(CONFIG_MAPPER_FACTORY).fromLinkedHashMapRecords(createGuessSample(issues, getUniqueAttributes(issues, expandJsonOnGuess), expandJsonOnGuess));
-        columns.forEach(conf -> conf.remove("index"));
-        return columns;
+        final IssueIdSnapshot snapshot = IssueIdSnapshot.of(task);
+        jiraClient.searchAllIssues(task, jql, fields, snapshot);
+        final long[] currentIds = snapshot.getIds();
+        final long[] previousIds = snapshot.loadPrevious();
+        if (previousIds == null) {
+            LOGGER.info(String.format("No id snapshot yet, saving the %d ids read. Deletions are detected from the next run", currentIds.length));
+        }
+        else {
+            final long[] deleted = {0};
+            DeletedIssues.forEach(previousIds, currentIds, DeletedIssues.now(), row -> {
+                issueWriter.accept(row);
+                deleted[0]++;
+            });
+            LOGGER.info(String.format("%d of the previous %d issues are gone, %d issues now", deleted[0], previousIds.length, currentIds.length));
+        }
+        snapshot.saveNext(currentIds);
     }
 
-    private SortedSet<String> getUniqueAttributes(final List<Issue> issues, final boolean expandJsonOnGuess)
+    /*
+     * Read a single page of ids in ascending order instead of all of them. The previous ids up to the largest id of the page
+     * are compared only, since those above it are on the following pages
+     * */
+    private void previewDeletedIssues(final JiraClient jiraClient, final PluginTask task, final String jql, final List<String> fields,
+            final IssueWriter issueWriter)
     {
-        final SortedSet<String> uniqueAttributes = new TreeSet<>();
-        for (final Issue issue : issues) {
-            for (final Entry<String, JsonElement> entry : issue.getFlatten(expandJsonOnGuess).entrySet()) {
-                uniqueAttributes.add(entry.getKey());
+        final IssueIdSnapshot snapshot = IssueIdSnapshot.of(task);
+        final long[] previousIds = snapshot.loadPrevious();
+        if (previousIds == null) {
+            return;
+        }
+        final String nextPageToken = jiraClient.searchIssues(task, JiraUtil.replaceJqlOrderBy(jql, "ORDER BY id ASC"), fields, null,
+                task.getMaxResults(), snapshot);
+        final long[] currentIds = snapshot.getIds();
+        int compared = previousIds.length;
+        if (nextPageToken != null) {
+            final long largestId = currentIds.length == 0 ? Long.MIN_VALUE : currentIds[currentIds.length - 1];
+            compared = 0;
+            while (compared < previousIds.length && previousIds[compared] <= largestId) {
+                compared++;
+            }
+        }
+        final int[] deleted = {0};
+        DeletedIssues.forEach(Arrays.copyOf(previousIds, compared), currentIds, DeletedIssues.now(), row -> {
+            if (deleted[0]++ < PREVIEW_RECORDS_COUNT) {
+                issueWriter.accept(row);
             }
+        });
+    }
+
+    /*
+     * Log the share of the approximate count of issues of the task loaded so far after each page, and the time left at this pace
+     * */
+    private static Consumer<String> createProgressLogger(final JiraClient jiraClient, final PluginTask task, final int taskIndex, final String jql)
+    {
+        if (!task.getLogProgress()) {
+            return nextPageToken -> {};
         }
-        return uniqueAttributes;
+        final long expected = jiraClient.countIssues(task, jql);
+        final long started = System.nanoTime();
+        LOGGER.info(String.format("Task %d will load about %d issues in %d pages", taskIndex, expected, JiraUtil.calculateTotalPage(expected, task.getMaxResults())));
+        return nextPageToken -> {
+            final long loaded = jiraClient.getMetrics().getIssues();
+            if (expected <= 0 || loaded <= 0) {
+                return;
+            }
+            final long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started);
+            final long remaining = Math.max(0, expected - loaded);
+            LOGGER.info(String.format("Task %d loaded %d of about %d issues (%.1f%%), about %d s left",
+                    taskIndex, loaded, expected, Math.min(100.0, 100.0 * loaded / expected), elapsedSeconds * remaining / loaded));
+        };
     }
 
-    private List<LinkedHashMap<String, Object>> createGuessSample(final List<Issue> issues, final Set<String> uniqueAttributes, final boolean expandJsonOnGuess)
+    /*
+     * The JQLs of the token chains fetched at once by a task: its JQL split into ranges of issue ids,
+     * found by searching the smallest and the largest id
+     * */
+    private static List<String> createSearchChains(final JiraClient jiraClient, final PluginTask task, final int taskIndex, final String jql)
     {
-        final List<LinkedHashMap<String, Object>> samples = new ArrayList<>();
-        for (final Issue issue : issues) {
-            final JsonObject flatten = issue.getFlatten(expandJsonOnGuess);
-            final JsonObject unified = new JsonObject();
-            for (final String key : uniqueAttributes) {
-                JsonElement value = flatten.get(key);
-                if (value == null) {
-                    value = JsonNull.INSTANCE;
+        if (task.getSearchChains() > 1) {
+            final OptionalLong minId = jiraClient.findIssueId(task, jql, false);
+            final OptionalLong maxId = jiraClient.findIssueId(task, jql, true);
+            if (minId.isPresent() && maxId.isPresent()) {
+                final List<String> partitions = JqlPartitioner.createIdPartitions(minId.getAsLong(), maxId.getAsLong(), task.getSearchChains());
+                if (!partitions.isEmpty()) {
+                    LOGGER.info(String.format("Task %d fetches %d chains of pages at once, by issue ids from %d to %d",
+                            taskIndex, partitions.size(), minId.getAsLong(), maxId.getAsLong()));
+                    return partitions.stream().map(partition -> JiraUtil.appendJqlCondition(jql, partition)).collect(Collectors.toList());
                 }
-                unified.add(key, value);
             }
-            samples.add(JiraUtil.toLinkedHashMap(unified));
         }
-        return samples;
+        return Collections.singletonList(jql);
+    }
+
+    @Override
+    public ConfigDiff guess(final ConfigSource config)
+    {
+        // Reset columns in case already have or missing on configuration
+        config.set("columns", new ArrayList<>());
+        final PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+        try (final JiraClient jiraClient = getJiraClient()) {
+            JiraUtil.validateTaskConfig(task, jiraClient.getHttpClient(task));
+            jiraClient.checkUserCredentials(task);
+            return CONFIG_MAPPER_FACTORY.newConfigDiff().set("columns", getGuessedColumns(jiraClient, task));
+        }
+    }
+
+    private List<ConfigDiff> getGuessedColumns(final JiraClient jiraClient, final PluginTask task)
+    {
+        final int sampleSize = task.getGuessSampleSize();
+        final GuessSample sample = new GuessSample(task);
+        if (IssueBulkFetcher.isEnabled(task)) {
+            final List<String> issueIdsOrKeys = IssueBulkFetcher.loadIssueIdsOrKeys(task);
+            try (final IssueBulkFetcher bulkFetcher = new IssueBulkFetcher(jiraClient, task, ALL_FIELDS)) {
+                bulkFetcher.fetchAll(issueIdsOrKeys.subList(0, Math.min(issueIdsOrKeys.size(), sampleSize)), sample);
+            }
+            return guessColumns(sample);
+        }
+        String nextPageToken = null;
+        do {
+            final long issues = sample.getIssues();
+            final int maxResults = (int) Math.min(task.getMaxResults(), sampleSize - issues);
+            nextPageToken = jiraClient.searchIssues(task, task.getJQL().orElse(""), ALL_FIELDS, nextPageToken, maxResults, sample);
+            if (sample.getIssues() == issues) {
+                break;
+            }
+        } while (nextPageToken != null && sample.getIssues() < sampleSize);
+        return guessColumns(sample);
+    }
+
+    private List<ConfigDiff> guessColumns(final GuessSample sample)
+    {
+        if (sample.getRows() == 0) {
+            throw new ConfigException("Could not guess schema due to empty data set");
+        }
+        LOGGER.info(String.format("Guessing %d columns from %d issues", sample.getColumnCount(), sample.getIssues()));
+        final List<ConfigDiff> columns = SchemaGuess.of(CONFIG_MAPPER_FACTORY).fromLinkedHashMapRecords(sample.toRecords());
+        columns.forEach(conf -> conf.remove("index"));
+        return columns;
     }
 
     @VisibleForTesting
@@ -255,5 +603,16 @@ public class JiraInputPlugin
     }
     @Override
     public void cleanup(final TaskSource taskSource, final Schema schema, final int taskCount, final List<TaskReport> successTaskReports)
-    {}
+    {
+        // The transaction is committed, so the next run starts from the first page
+        final PluginTask task = TASK_MAPPER.map(taskSource, PluginTask.class);
+        final List<String> fields = JiraUtil.buildRequestFields(task, schema);
+        for (int taskIndex = 0; taskIndex < taskCount; taskIndex++) {
+            TaskCheckpoint.delete(task, taskIndex, fields);
+        }
+        TaskCheckpoint.deletePartitions(task);
+        if (task.getRecordMode() == RecordMode.DELETED_ISSUES) {
+            IssueIdSnapshot.commit(task);
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package org.embulk.input.jira;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import org.embulk.config.ConfigException;
+
+public enum PartitionBy {
+    NONE,
+    CREATED,
+    PROJECT;
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return this.name().toLowerCase();
+    }
+
+    @JsonCreator
+    public static PartitionBy fromString(String value)
+    {
+        switch(value) {
+        case "none":
+            return NONE;
+        case "created":
+            return CREATED;
+        case "project":
+            return PROJECT;
+        default:
+            throw new ConfigException(String.format("Unknown PartitionBy value '%s'. Supported values are none, created and project.", value));
+        }
+    }
+}
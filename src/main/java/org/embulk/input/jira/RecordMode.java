@@ -0,0 +1,33 @@
+package org.embulk.input.jira;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import org.embulk.config.ConfigException;
+
+public enum RecordMode {
+    ISSUES,
+    CHANGELOG_ITEMS,
+    DELETED_ISSUES;
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return this.name().toLowerCase();
+    }
+
+    @JsonCreator
+    public static RecordMode fromString(String value)
+    {
+        switch(value) {
+        case "issues":
+            return ISSUES;
+        case "changelog_items":
+            return CHANGELOG_ITEMS;
+        case "deleted_issues":
+            return DELETED_ISSUES;
+        default:
+            throw new ConfigException(String.format("Unknown RecordMode value '%s'. Supported values are issues, changelog_items and deleted_issues.", value));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.embulk.input.jira;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import org.embulk.config.ConfigException;
+
+import static org.embulk.input.jira.Constant.ISSUE_COMMENT_URI_PATH;
+import static org.embulk.input.jira.Constant.ISSUE_WORKLOG_URI_PATH;
+
+/*
+ * Resources of an issue which are truncated in search results, with the field embedding them
+ * and the endpoint returning all of them
+ * */
+public enum Subresource {
+    COMMENTS("comment", "comments", ISSUE_COMMENT_URI_PATH),
+    WORKLOGS("worklog", "worklogs", ISSUE_WORKLOG_URI_PATH);
+
+    private final String field;
+    private final String valuesKey;
+    private final String uriPath;
+
+    Subresource(final String field, final String valuesKey, final String uriPath)
+    {
+        this.field = field;
+        this.valuesKey = valuesKey;
+        this.uriPath = uriPath;
+    }
+
+    public String getField()
+    {
+        return field;
+    }
+
+    public String getValuesKey()
+    {
+        return valuesKey;
+    }
+
+    public String getUriPath()
+    {
+        return uriPath;
+    }
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return this.name().toLowerCase();
+    }
+
+    @JsonCreator
+    public static Subresource fromString(String value)
+    {
+        switch(value) {
+        case "comments":
+            return COMMENTS;
+        case "worklogs":
+            return WORKLOGS;
+        default:
+            throw new ConfigException(String.format("Unknown Subresource value '%s'. Supported values are comments and worklogs.", value));
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.embulk.input.jira;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.embulk.config.ConfigException;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * The progress of a task saved in checkpoint_directory after each page, once the records of the page are flushed to the output.
+ * A task run again after a failure continues from the page following the last saved one.
+ * The file is named after the configured JQL and the fields of the task, so a changed configuration starts from the first page.
+ * It keeps the JQL of the task too, so that a task whose JQL has changed since (i.e. its partition) never resumes from it
+ * */
+final class TaskCheckpoint
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskCheckpoint.class);
+
+    private final Path path;
+    private final String jql;
+    private String nextPageToken;
+    private int pages;
+    private boolean completed;
+    private String lastIssueId;
+    private String lastUpdated;
+
+    private TaskCheckpoint(final Path path, final String jql)
+    {
+        this.path = path;
+        this.jql = jql;
+    }
+
+    static Optional<TaskCheckpoint> load(final PluginTask task, final int taskIndex, final String jql, final List<String> fields)
+    {
+        if (!task.getCheckpointDirectory().isPresent()) {
+            return Optional.empty();
+        }
+        final TaskCheckpoint checkpoint = new TaskCheckpoint(getPath(task, taskIndex, fields), jql);
+        if (!Files.exists(checkpoint.path)) {
+            return Optional.of(checkpoint);
+        }
+        // Loading from the first page instead would write the issues before the checkpoint twice
+        final String savedJql;
+        try {
+            final JsonObject json = new JsonParser().parse(new String(Files.readAllBytes(checkpoint.path), StandardCharsets.UTF_8)).getAsJsonObject();
+            savedJql = getString(json, "jql");
+            checkpoint.nextPageToken = getString(json, "next_page_token");
+            checkpoint.pages = json.get("pages").getAsInt();
+            checkpoint.completed = json.get("completed").getAsBoolean();
+            checkpoint.lastIssueId = getString(json, "last_issue_id");
+            checkpoint.lastUpdated = getString(json, "last_updated");
+        }
+        catch (final IOException | RuntimeException e) {
+            throw new ConfigException(String.format("Could not read the checkpoint %s, delete it to load the task from the first page", checkpoint.path), e);
+        }
+        if (checkpoint.lastIssueId != null) {
+            try {
+                Long.parseLong(checkpoint.lastIssueId);
+            }
+            catch (final NumberFormatException e) {
+                throw new ConfigException(String.format("The checkpoint %s has an invalid last_issue_id \"%s\", delete it to load the task from the first page",
+                        checkpoint.path, checkpoint.lastIssueId), e);
+            }
+        }
+        if (!jql.equals(savedJql)) {
+            throw new ConfigException(String.format("The checkpoint %s was saved for the JQL \"%s\" of task %d, which is now \"%s\". "
+                    + "Delete it to load the task from the first page", checkpoint.path, savedJql, taskIndex, jql));
+        }
+        return Optional.of(checkpoint);
+    }
+
+    static void delete(final PluginTask task, final int taskIndex, final List<String> fields)
+    {
+        if (!task.getCheckpointDirectory().isPresent()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(getPath(task, taskIndex, fields));
+        }
+        catch (final IOException e) {
+            LOGGER.warn("Could not delete the checkpoint", e);
+        }
+    }
+
+    /*
+     * The partitions planned by the failed run, so that a run again after a failure splits the JQL the same way
+     * even though the plan depends on the current time or on live counts of issues
+     * */
+    static Optional<List<String>> loadPartitions(final PluginTask task)
+    {
+        if (!task.getCheckpointDirectory().isPresent()) {
+            return Optional.empty();
+        }
+        final Path path = getPartitionsPath(task);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            final JsonArray json = new JsonParser().parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8)).getAsJsonArray();
+            final List<String> partitions = new ArrayList<>();
+            json.forEach(partition -> partitions.add(partition.getAsString()));
+            return Optional.of(partitions);
+        }
+        catch (final IOException | RuntimeException e) {
+            throw new ConfigException(String.format("Could not read the partitions %s, delete it along with the checkpoints to load from the first page", path), e);
+        }
+    }
+
+    static void savePartitions(final PluginTask task, final List<String> partitions)
+    {
+        if (!task.getCheckpointDirectory().isPresent()) {
+            return;
+        }
+        final JsonArray json = new JsonArray();
+        partitions.forEach(json::add);
+        write(getPartitionsPath(task), json.toString());
+    }
+
+    static void deletePartitions(final PluginTask task)
+    {
+        if (!task.getCheckpointDirectory().isPresent()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(getPartitionsPath(task));
+        }
+        catch (final IOException e) {
+            LOGGER.warn("Could not delete the partitions", e);
+        }
+    }
+
+    Path getPath()
+    {
+        return path;
+    }
+
+    boolean isResumed()
+    {
+        return pages > 0;
+    }
+
+    String getNextPageToken()
+    {
+        return nextPageToken;
+    }
+
+    int getPages()
+    {
+        return pages;
+    }
+
+    boolean isCompleted()
+    {
+        return completed;
+    }
+
+    String getLastIssueId()
+    {
+        return lastIssueId;
+    }
+
+    String getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    /*
+     * Record that every issue before the page of nextPageToken has been written, a null token meaning the task is completed
+     * */
+    void save(final String nextPageToken, final String lastIssueId, final String lastUpdated)
+    {
+        this.nextPageToken = nextPageToken;
+        this.pages++;
+        this.completed = nextPageToken == null;
+        this.lastIssueId = lastIssueId;
+        this.lastUpdated = lastUpdated;
+        final JsonObject json = new JsonObject();
+        json.addProperty("jql", jql);
+        json.addProperty("next_page_token", nextPageToken);
+        json.addProperty("pages", pages);
+        json.addProperty("completed", completed);
+        json.addProperty("last_issue_id", lastIssueId);
+        json.addProperty("last_updated", lastUpdated);
+        write(path, json.toString());
+    }
+
+    private static void write(final Path path, final String content)
+    {
+        try {
+            Files.createDirectories(path.getParent());
+            // Write a temporary file first so a failure while writing never leaves a broken checkpoint
+            final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temporary, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(String.format("Could not write the checkpoint %s", path), e);
+        }
+    }
+
+    /*
+     * Named after what stays the same when a failed run is run again, unlike the JQL of the task
+     * */
+    private static Path getPath(final PluginTask task, final int taskIndex, final List<String> fields)
+    {
+        final String key = String.join("\n", task.getUri(), task.getJQL().orElse(""), String.join(",", fields), task.getRecordMode().toString());
+        return Paths.get(task.getCheckpointDirectory().get(), String.format("jira-%s-task-%d.json", hash(key), taskIndex));
+    }
+
+    private static Path getPartitionsPath(final PluginTask task)
+    {
+        final String key = String.join("\n", task.getUri(), task.getJQL().orElse(""), task.getRecordMode().toString(),
+                task.getPartitionBy().toString(), Integer.toString(task.getMaxTasks()), task.getPartitionCreatedFrom().orElse(""),
+                task.getPartitionCreatedTo().orElse(""), String.join(",", task.getPartitionProjects()), Boolean.toString(task.getBalancePartitions()));
+        return Paths.get(task.getCheckpointDirectory().get(), String.format("jira-%s-partitions.json", hash(key)));
+    }
+
+    private static String hash(final String key)
+    {
+        return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString().substring(0, 16);
+    }
+
+    private static String getString(final JsonObject json, final String key)
+    {
+        final JsonElement value = json.get(key);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+}
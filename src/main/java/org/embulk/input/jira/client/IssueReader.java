@@ -0,0 +1,143 @@
+package org.embulk.input.jira.client;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.embulk.input.jira.Issue;
+import org.embulk.input.jira.IssueKeys;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Read the issues of a search page straight into their compact form: the attributes and the fields of an issue become
+ * values by the slots of keys shared by the page, instead of a JSON object per issue with the fields merged into it.
+ * Object names and short strings repeated across the issues (statuses, users, options...) are shared by the issues of the page
+ * */
+final class IssueReader
+{
+    // Strings longer than this are seldom repeated, i.e. summaries and descriptions
+    private static final int MAX_SHARED_STRING_LENGTH = 64;
+    // Bounds what a page with many distinct values keeps for sharing
+    private static final int MAX_SHARED_VALUES = 8192;
+    private static final JsonPrimitive TRUE = new JsonPrimitive(true);
+    private static final JsonPrimitive FALSE = new JsonPrimitive(false);
+
+    private final IssueKeys issueKeys = new IssueKeys();
+    private final Map<String, String> names = new HashMap<>();
+    private final Map<String, JsonPrimitive> strings = new HashMap<>();
+    private JsonElement[] buffer = new JsonElement[64];
+
+    /*
+     * Read the issue the reader is at. Fields override the top-level attributes of the same name, i.e. "id" and "key"
+     * */
+    Issue read(final JsonReader reader) throws IOException
+    {
+        int length = 0;
+        boolean fieldsRead = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if ("fields".equals(name)) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    final int slot = issueKeys.slot(reader.nextName());
+                    put(slot, readValue(reader));
+                    length = Math.max(length, slot + 1);
+                }
+                reader.endObject();
+                fieldsRead = true;
+                continue;
+            }
+            final int slot = issueKeys.slot(name);
+            if (fieldsRead && slot < buffer.length && buffer[slot] != null) {
+                reader.skipValue();
+                continue;
+            }
+            put(slot, readValue(reader));
+            length = Math.max(length, slot + 1);
+        }
+        reader.endObject();
+        final JsonElement[] values = Arrays.copyOf(buffer, length);
+        Arrays.fill(buffer, 0, length, null);
+        return new Issue(issueKeys, values);
+    }
+
+    private void put(final int slot, final JsonElement value)
+    {
+        if (slot >= buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, slot + 1));
+        }
+        buffer[slot] = value;
+    }
+
+    private JsonElement readValue(final JsonReader reader) throws IOException
+    {
+        switch (reader.peek()) {
+        case BEGIN_OBJECT:
+            final JsonObject object = new JsonObject();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                object.add(share(names, reader.nextName()), readValue(reader));
+            }
+            reader.endObject();
+            return object;
+        case BEGIN_ARRAY:
+            final JsonArray array = new JsonArray();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                array.add(readValue(reader));
+            }
+            reader.endArray();
+            return array;
+        case STRING:
+            final String string = reader.nextString();
+            if (string.length() > MAX_SHARED_STRING_LENGTH) {
+                return new JsonPrimitive(string);
+            }
+            final JsonPrimitive shared = strings.get(string);
+            if (shared != null) {
+                return shared;
+            }
+            final JsonPrimitive primitive = new JsonPrimitive(string);
+            if (strings.size() < MAX_SHARED_VALUES) {
+                strings.put(string, primitive);
+            }
+            return primitive;
+        case NUMBER:
+            // As JsonParser does, so that the number keeps the text JIRA sent
+            return new JsonPrimitive(new LazilyParsedNumber(reader.nextString()));
+        case BOOLEAN:
+            return reader.nextBoolean() ? TRUE : FALSE;
+        case NULL:
+            reader.nextNull();
+            return JsonNull.INSTANCE;
+        default:
+            throw new JsonParseException(String.format("Unexpected %s at %s", reader.peek(), reader.getPath()));
+        }
+    }
+
+    private static String share(final Map<String, String> values, final String value)
+    {
+        final String shared = values.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (values.size() < MAX_SHARED_VALUES) {
+            values.put(value, value);
+        }
+        return value;
+    }
+}
@@ -4,52 +4,141 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.DeflateInputStream;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.embulk.config.ConfigException;
 import org.embulk.input.jira.Issue;
 import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.Subresource;
 import org.embulk.input.jira.util.JiraException;
 import org.embulk.input.jira.util.JiraUtil;
+import org.embulk.input.jira.util.TaskMetrics;
 import org.embulk.util.retryhelper.RetryExecutor;
 import org.embulk.util.retryhelper.RetryGiveupException;
 import org.embulk.util.retryhelper.Retryable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
 
 import static java.util.Base64.getEncoder;
 import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpHeaders.ACCEPT_ENCODING;
 import static org.apache.http.HttpHeaders.AUTHORIZATION;
 import static org.apache.http.HttpHeaders.CONTENT_TYPE;
+import static org.embulk.input.jira.Constant.ALL_FIELDS;
 import static org.embulk.input.jira.Constant.HTTP_TIMEOUT;
+import static org.embulk.input.jira.Constant.ISSUE_CHANGELOG_URI_PATH;
+import static org.embulk.input.jira.Constant.ISSUE_RESOURCE_PAGE_SIZE;
 import static org.embulk.input.jira.Constant.MIN_RESULTS;
 
-public class JiraClient
+public class JiraClient implements AutoCloseable
 {
     public JiraClient() {}
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JiraClient.class);
+    // Not defined in HttpStatus of httpcore 4.4
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final List<String> ID_FIELDS = Collections.singletonList("id");
+
+    private CloseableHttpClient httpClient;
+    private final TaskMetrics metrics = new TaskMetrics();
+    // The cache written to, whose pages are evicted once the client is closed
+    private volatile SearchCache cacheToEvict;
+
+    /*
+     * The HTTP client is created once and kept for the lifetime of this JiraClient
+     * so that every request reuses the pooled keep-alive connections
+     * */
+    public synchronized CloseableHttpClient getHttpClient(final PluginTask task)
+    {
+        if (httpClient == null) {
+            // Checked here since the connection pool rejects a size below 1 before validateTaskConfig could tell
+            if (task.getMaxConnectionsPerRoute() < 1) {
+                throw new ConfigException("Max connections per route should be equal or greater than 1");
+            }
+            httpClient = createHttpClient(task);
+        }
+        return httpClient;
+    }
+
+    /*
+     * Release the rate limit shared by the tasks of the transaction, once the transaction is over
+     * */
+    public static void releaseRateLimiter(final PluginTask task)
+    {
+        JiraRateLimiter.release(task);
+    }
+
+    /*
+     * What the requests of this client have cost so far
+     * */
+    public TaskMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        // Once per client rather than per page, which would list the whole directory each time
+        if (cacheToEvict != null) {
+            cacheToEvict.evict();
+            cacheToEvict = null;
+        }
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            }
+            catch (final IOException e) {
+                LOGGER.warn("Could not close the HTTP client", e);
+            }
+            finally {
+                httpClient = null;
+            }
+        }
+    }
 
     public void checkUserCredentials(final PluginTask task)
     {
@@ -67,32 +156,305 @@ public class JiraClient
 
     public Pair<List<Issue>, String> searchIssues(final PluginTask task, final String nextPageToken, final int maxResults)
     {
-        final String response = searchJiraAPI(task, nextPageToken, maxResults);
-        final JsonObject result = new JsonParser().parse(response).getAsJsonObject();
-        final JsonElement newNextPageTokenJson = result.get("nextPageToken");
-        final String newNextPageToken;
-        if (newNextPageTokenJson == null) {
-            newNextPageToken = null;
-        } else {
-            newNextPageToken = newNextPageTokenJson.getAsString();
-        }
-        final List<Issue> issues = StreamSupport.stream(result.get("issues").getAsJsonArray().spliterator(), false)
-                            .map(jsonElement -> {
-                                final JsonObject json = jsonElement.getAsJsonObject();
-                                final JsonObject fields = json.get("fields").getAsJsonObject();
-                                final Set<Entry<String, JsonElement>> entries = fields.entrySet();
-                                json.remove("fields");
-                                // Merged all properties in fields to the object
-                                for (final Entry<String, JsonElement> entry : entries) {
-                                    json.add(entry.getKey(), entry.getValue());
-                                }
-                                return new Issue(json);
-                            })
-                            .collect(Collectors.toList());
+        return searchIssues(task, task.getJQL().orElse(""), ALL_FIELDS, nextPageToken, maxResults);
+    }
+
+    public Pair<List<Issue>, String> searchIssues(final PluginTask task, final String jql, final List<String> fields, final String nextPageToken, final int maxResults)
+    {
+        final List<Issue> issues = new ArrayList<>();
+        final String newNextPageToken = searchIssues(task, jql, fields, nextPageToken, maxResults, issues::add);
         return Pair.of(issues, newNextPageToken);
     }
 
-    private String searchJiraAPI(final PluginTask task, final String nextPageToken, final int maxResults)
+    /*
+     * Pass the issues of a page to the consumer one by one while the response is being read,
+     * so the raw response and the whole page never have to be kept in memory.
+     * A page failing midway is read again from the start, passing on only the issues not passed on yet.
+     * Return the token of the next page, or null for the last page
+     * */
+    public String searchIssues(final PluginTask task, final String jql, final List<String> fields, final String nextPageToken, final int maxResults,
+            final Consumer<Issue> consumer)
+    {
+        final String body = createSearchIssuesBody(task, jql, fields, nextPageToken, maxResults);
+        final PageConsumer pageConsumer = new PageConsumer(consumer);
+        final Optional<SearchCache> cache = SearchCache.of(task);
+        final String cacheKey = SearchCache.key(task, body);
+        if (cache.isPresent()) {
+            try (final Reader cached = cache.get().open(cacheKey)) {
+                if (cached != null) {
+                    final String newNextPageToken = parsePage(cached, pageConsumer);
+                    metrics.addCacheHit();
+                    metrics.addPage();
+                    return newNextPageToken;
+                }
+            }
+            // JsonReader throws IllegalStateException on a valid JSON of another structure
+            catch (final IOException | JsonParseException | IllegalStateException e) {
+                cache.get().remove(cacheKey);
+                LOGGER.warn(String.format("Could not read the cached page %s, fetching it from JIRA", cacheKey), e);
+            }
+        }
+        final String newNextPageToken = requestJiraAPI(task, JiraUtil.buildSearchUrl(task.getUri()), body,
+                entity -> {
+                    if (!cache.isPresent()) {
+                        return parsePage(createReader(entity), pageConsumer);
+                    }
+                    final SearchCache.Entry entry = cache.get().create(cacheKey);
+                    try {
+                        final String token = parsePage(entry.tee(createReader(entity)), pageConsumer);
+                        entry.commit();
+                        cacheToEvict = cache.get();
+                        return token;
+                    }
+                    finally {
+                        entry.discard();
+                    }
+                });
+        metrics.addPage();
+        return newNextPageToken;
+    }
+
+    private String parsePage(final Reader reader, final PageConsumer pageConsumer) throws IOException
+    {
+        // The time spent by the consumer is not part of parsing the page
+        final long started = System.nanoTime();
+        final long[] consumerNanos = {0};
+        try {
+            return parseSearchResponse(reader, issue -> {
+                final long consumerStarted = System.nanoTime();
+                pageConsumer.accept(issue);
+                consumerNanos[0] += System.nanoTime() - consumerStarted;
+            });
+        }
+        finally {
+            metrics.addParse(System.nanoTime() - started - consumerNanos[0]);
+        }
+    }
+
+    /*
+     * Pass on the issues of a page once, however many times the page is read.
+     * Issues are told apart by their id, since an issue updated in between may move within the page
+     * */
+    private static final class PageConsumer implements Consumer<Issue>
+    {
+        private final Consumer<Issue> consumer;
+        private final Set<String> passedOnIds = new HashSet<>();
+
+        private PageConsumer(final Consumer<Issue> consumer)
+        {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accept(final Issue issue)
+        {
+            final JsonElement id = issue.getValue("id");
+            if (id.isJsonPrimitive() && !passedOnIds.add(id.getAsString())) {
+                return;
+            }
+            consumer.accept(issue);
+        }
+    }
+
+    /*
+     * JIRA's approximate number of issues matching the JQL, which the token based search does not tell
+     * */
+    public long countIssues(final PluginTask task, final String jql)
+    {
+        final JsonObject body = new JsonObject();
+        body.addProperty("jql", jql);
+        final JsonObject response = requestJiraAPI(task, JiraUtil.buildApproximateCountUrl(task.getUri()), body.toString(),
+                entity -> new JsonParser().parse(createReader(entity)).getAsJsonObject());
+        final JsonElement count = response.get("count");
+        if (count == null || !count.isJsonPrimitive()) {
+            throw new ConfigException("Could not read the approximate count of issues from JIRA");
+        }
+        return count.getAsLong();
+    }
+
+    /*
+     * The smallest or the largest issue id matched by the JQL, searching a single issue with its id only
+     * */
+    public OptionalLong findIssueId(final PluginTask task, final String jql, final boolean largest)
+    {
+        final String orderedJql = JiraUtil.replaceJqlOrderBy(jql, largest ? "ORDER BY id DESC" : "ORDER BY id ASC");
+        final List<Issue> issues = searchIssues(task, orderedJql, ID_FIELDS, null, 1).getLeft();
+        if (issues.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(issues.get(0).getValue("id").getAsLong());
+    }
+
+    /*
+     * Follow the page tokens until the last page and pass every issue to the consumer
+     * */
+    public void searchAllIssues(final PluginTask task, final String jql, final List<String> fields, final Consumer<Issue> consumer)
+    {
+        searchAllIssues(task, jql, fields, null, consumer, nextPageToken -> {});
+    }
+
+    /*
+     * Start from the given page token, and tell the token of the following page after the issues of each page.
+     * A start token which JIRA does not accept anymore (i.e. expired) fails the search, since the issues before it
+     * have already been written and loading from the first page again would write them twice
+     * */
+    public void searchAllIssues(final PluginTask task, final String jql, final List<String> fields, final String startPageToken,
+            final Consumer<Issue> consumer, final Consumer<String> pageFinished)
+    {
+        int currentPage = 0;
+        String nextPageToken = startPageToken;
+        do {
+            LOGGER.info(String.format("Fetching page %d", (currentPage + 1)));
+            nextPageToken = searchIssues(task, jql, fields, nextPageToken, task.getMaxResults(), consumer);
+            pageFinished.accept(nextPageToken);
+            currentPage++;
+        } while (nextPageToken != null);
+    }
+
+    /*
+     * Fetch the issues of the given ids or keys, at most BULK_FETCH_MAX_ISSUES, in a single request.
+     * The issues are read whole before being returned, so that a failed request can be retried.
+     * Issues which do not exist or are not visible are left out
+     * */
+    public List<Issue> fetchIssues(final PluginTask task, final List<String> issueIdsOrKeys, final List<String> fields)
+    {
+        final String body = createBulkFetchBody(task, issueIdsOrKeys, fields);
+        final List<Issue> issues = requestJiraAPI(task, JiraUtil.buildBulkFetchUrl(task.getUri()), body,
+                entity -> {
+                    final long started = System.nanoTime();
+                    final List<Issue> fetched = new ArrayList<>();
+                    final int errors = parseBulkFetchResponse(createReader(entity), fetched::add);
+                    metrics.addParse(System.nanoTime() - started);
+                    if (errors > 0) {
+                        LOGGER.warn(String.format("%d of %d issues could not be fetched, they do not exist or are not visible",
+                                errors, issueIdsOrKeys.size()));
+                    }
+                    return fetched;
+                });
+        metrics.addPage();
+        return issues;
+    }
+
+    /*
+     * Fetch every history of the issue from the changelog endpoint,
+     * since the changelog embedded in search results is truncated
+     * */
+    public JsonArray getChangelogHistories(final PluginTask task, final String issueKey)
+    {
+        return getIssueResources(task, ISSUE_CHANGELOG_URI_PATH, issueKey, "values");
+    }
+
+    /*
+     * Fetch all the comments or worklogs of the issue, which are truncated in search results
+     * */
+    public JsonArray getSubresources(final PluginTask task, final Subresource subresource, final String issueKey)
+    {
+        return getIssueResources(task, subresource.getUriPath(), issueKey, subresource.getValuesKey());
+    }
+
+    /*
+     * Follow the pages of a resource of the issue until every value has been read
+     * */
+    private JsonArray getIssueResources(final PluginTask task, final String path, final String issueKey, final String valuesKey)
+    {
+        final JsonArray values = new JsonArray();
+        while (true) {
+            final String url = JiraUtil.buildIssueResourceUrl(task.getUri(), path, issueKey, values.size(), ISSUE_RESOURCE_PAGE_SIZE);
+            final JsonObject page = requestJiraAPI(task, url, null,
+                    entity -> new JsonParser().parse(createReader(entity)).getAsJsonObject());
+            final JsonElement pageValues = page.get(valuesKey);
+            if (pageValues == null || !pageValues.isJsonArray() || pageValues.getAsJsonArray().size() == 0) {
+                return values;
+            }
+            values.addAll(pageValues.getAsJsonArray());
+            final JsonElement isLast = page.get("isLast");
+            final JsonElement total = page.get("total");
+            if ((isLast != null && isLast.isJsonPrimitive() && isLast.getAsBoolean())
+                    || (total != null && total.isJsonPrimitive() && values.size() >= total.getAsInt())) {
+                return values;
+            }
+        }
+    }
+
+    /*
+     * Read the issues of a search response with a streaming reader and return the token of the next page
+     * */
+    @VisibleForTesting
+    public static String parseSearchResponse(final Reader reader, final Consumer<Issue> consumer) throws IOException
+    {
+        String nextPageToken = null;
+        try (final JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                final String name = jsonReader.nextName();
+                if ("issues".equals(name)) {
+                    readIssues(jsonReader, consumer);
+                }
+                else if ("nextPageToken".equals(name) && jsonReader.peek() == JsonToken.STRING) {
+                    nextPageToken = jsonReader.nextString();
+                }
+                else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        }
+        return nextPageToken;
+    }
+
+    /*
+     * Read the issues of a bulk fetch response and return the number of issues which could not be fetched
+     * */
+    @VisibleForTesting
+    public static int parseBulkFetchResponse(final Reader reader, final Consumer<Issue> consumer) throws IOException
+    {
+        int errors = 0;
+        try (final JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                final String name = jsonReader.nextName();
+                if ("issues".equals(name)) {
+                    readIssues(jsonReader, consumer);
+                }
+                else if ("issueErrors".equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    jsonReader.beginArray();
+                    while (jsonReader.hasNext()) {
+                        jsonReader.skipValue();
+                        errors++;
+                    }
+                    jsonReader.endArray();
+                }
+                else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        }
+        return errors;
+    }
+
+    private static void readIssues(final JsonReader jsonReader, final Consumer<Issue> consumer) throws IOException
+    {
+        final IssueReader issueReader = new IssueReader();
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            consumer.accept(issueReader.read(jsonReader));
+        }
+        jsonReader.endArray();
+    }
+
+    private static Reader createReader(final HttpEntity entity) throws IOException
+    {
+        final ContentType contentType = ContentType.get(entity);
+        final Charset charset = contentType == null || contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+        return new InputStreamReader(entity.getContent(), charset);
+    }
+
+    /*
+     * Send the request with retries. A response failing while it is read is requested again,
+     * so the entity reader must tolerate reading the same data twice
+     * */
+    private <T> T requestJiraAPI(final PluginTask task, final String url, final String body, final EntityReader<T> entityReader)
     {
         try {
             return RetryExecutor.builder()
@@ -100,12 +462,12 @@ public class JiraClient
                     .withInitialRetryWaitMillis(task.getInitialRetryIntervalMillis())
                     .withMaxRetryWaitMillis(task.getMaximumRetryIntervalMillis())
                     .build()
-                    .runInterruptible(new Retryable<String>()
+                    .runInterruptible(new Retryable<T>()
                     {
                 @Override
-                public String call() throws Exception
+                public T call() throws Exception
                 {
-                    return authorizeAndRequest(task, JiraUtil.buildSearchUrl(task.getUri()), createSearchIssuesBody(task, nextPageToken, maxResults));
+                    return requestHonoringRetryAfter(task, url, body, entityReader);
                 }
 
                 @Override
@@ -114,9 +476,10 @@ public class JiraClient
                     if (exception instanceof JiraException) {
                         final int statusCode = ((JiraException) exception).getStatusCode();
                         // When overloading JIRA APIs (i.e 100 requests per second) the API will return 401 although the credential is correct. So add retry for this
-                        // 429 is stand for "Too many requests"
+                        // 429 is stand for "Too many requests", retried here only when JIRA did not tell how long to wait
                         // Other 4xx considered errors
-                        return statusCode / 100 != 4 || statusCode == HttpStatus.SC_UNAUTHORIZED || statusCode == 429;
+                        return statusCode / 100 != 4 || statusCode == HttpStatus.SC_UNAUTHORIZED
+                                || (statusCode == SC_TOO_MANY_REQUESTS && ((JiraException) exception).getRetryAfterMillis() < 0);
                     }
                     return false;
                 }
@@ -125,6 +488,8 @@ public class JiraClient
                 public void onRetry(final Exception exception, final int retryCount, final int retryLimit, final int retryWait)
                         throws RetryGiveupException
                 {
+                    metrics.addRetry(exception instanceof JiraException ? ((JiraException) exception).getStatusCode() : -1);
+                    metrics.addWait(TimeUnit.MILLISECONDS.toNanos(retryWait));
                     if (exception instanceof JiraException) {
                         final String message = String
                                 .format("Retrying %d/%d after %d seconds. HTTP status code: %s",
@@ -154,13 +519,64 @@ public class JiraClient
             if (e instanceof RetryGiveupException && e.getCause() != null && e.getCause() instanceof JiraException) {
                 throw new ConfigException(e.getCause().getMessage());
             }
+            // Errors raised while handling the response (i.e. writing records) are not wrapped
+            if (e instanceof RetryGiveupException && e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
             throw new ConfigException(e);
         }
     }
 
+    /*
+     * When JIRA answers 429 with the time to wait, the rate limiter holds the next request back until then,
+     * so retry right away instead of adding the exponential backoff on top.
+     * A wait of 0 (or a date in the past) is no wait at all, so the requests are then held back
+     * by initial_retry_interval_millis, doubled on each retry
+     * */
+    private <T> T requestHonoringRetryAfter(final PluginTask task, final String url, final String body, final EntityReader<T> entityReader)
+            throws JiraException
+    {
+        int retryCount = 0;
+        while (true) {
+            try {
+                return authorizeAndRequest(task, url, body, entityReader);
+            }
+            catch (final JiraException e) {
+                if (e.getStatusCode() != SC_TOO_MANY_REQUESTS || e.getRetryAfterMillis() < 0 || retryCount >= task.getRetryLimit()) {
+                    throw e;
+                }
+                long waitMillis = e.getRetryAfterMillis();
+                if (waitMillis <= 0) {
+                    waitMillis = Math.min(task.getMaximumRetryIntervalMillis(), (long) task.getInitialRetryIntervalMillis() << Math.min(retryCount, 30));
+                    JiraRateLimiter.of(task).pause(waitMillis);
+                }
+                retryCount++;
+                metrics.addRetry(SC_TOO_MANY_REQUESTS);
+                LOGGER.warn(String.format("Rate limited by JIRA API, retrying %d/%d after %d milliseconds",
+                        retryCount, task.getRetryLimit(), waitMillis));
+            }
+        }
+    }
+
     private String authorizeAndRequest(final PluginTask task, final String url, final String body) throws JiraException
     {
-        try (CloseableHttpClient client = createHttpClient()) {
+        return authorizeAndRequest(task, url, body, EntityUtils::toString);
+    }
+
+    private <T> T authorizeAndRequest(final PluginTask task, final String url, final String body, final EntityReader<T> entityReader) throws JiraException
+    {
+        final JiraRateLimiter rateLimiter = JiraRateLimiter.of(task);
+        final long waitStarted = System.nanoTime();
+        try {
+            rateLimiter.acquire();
+            metrics.addWait(System.nanoTime() - waitStarted);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConfigException(e);
+        }
+        try {
+            final CloseableHttpClient client = getHttpClient(task);
             HttpRequestBase request;
             if (body == null) {
                 request = createGetRequest(task, url);
@@ -168,13 +584,24 @@ public class JiraClient
             else {
                 request = createPostRequest(task, url, body);
             }
+            final long requestStarted = System.nanoTime();
             try (CloseableHttpResponse response = client.execute(request)) {
+                metrics.addRequest(System.nanoTime() - requestStarted);
              // Check for HTTP response code : 200 : SUCCESS
                 final int statusCode = response.getStatusLine().getStatusCode();
+                final HttpEntity entity = response.getEntity() == null ? null : new DecodingEntity(response.getEntity(), metrics);
+                if (statusCode == SC_TOO_MANY_REQUESTS) {
+                    final long retryAfterMillis = rateLimiter.onThrottled(response);
+                    throw new JiraException(statusCode, extractErrorMessages(EntityUtils.toString(entity)), retryAfterMillis);
+                }
                 if (statusCode != HttpStatus.SC_OK) {
-                    throw new JiraException(statusCode, extractErrorMessages(EntityUtils.toString(response.getEntity())));
+                    throw new JiraException(statusCode, extractErrorMessages(EntityUtils.toString(entity)));
                 }
-                return EntityUtils.toString(response.getEntity());
+                rateLimiter.onSuccess(response);
+                final T result = entityReader.read(entity);
+                // Drain what is left so the connection can be reused
+                EntityUtils.consume(entity);
+                return result;
             }
         }
         catch (final IOException e) {
@@ -182,6 +609,102 @@ public class JiraClient
         }
     }
 
+    /*
+     * Decode a compressed response body while it is read, so the readers stream the JSON without inflating it first.
+     * The bytes are counted on both sides of the decoder
+     * */
+    private static final class DecodingEntity extends HttpEntityWrapper
+    {
+        private final TaskMetrics metrics;
+        private final String contentEncoding;
+        private InputStream content;
+
+        DecodingEntity(final HttpEntity entity, final TaskMetrics metrics)
+        {
+            super(entity);
+            this.metrics = metrics;
+            final Header header = entity.getContentEncoding();
+            this.contentEncoding = header == null || header.getValue() == null ? "identity" : header.getValue().trim().toLowerCase(Locale.ENGLISH);
+        }
+
+        @Override
+        public synchronized InputStream getContent() throws IOException
+        {
+            if (content == null) {
+                final InputStream wire = new CountingInputStream(super.getContent(), metrics::addWireBytesReceived);
+                content = new CountingInputStream(decode(wire), metrics::addBytesReceived);
+            }
+            return content;
+        }
+
+        private InputStream decode(final InputStream wire) throws IOException
+        {
+            if (super.getContentLength() == 0) {
+                return wire;
+            }
+            switch (contentEncoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(wire);
+            case "deflate":
+                return new DeflateInputStream(wire);
+            case "identity":
+                return wire;
+            default:
+                throw new IOException(String.format("Unsupported Content-Encoding: %s", contentEncoding));
+            }
+        }
+
+        @Override
+        public Header getContentEncoding()
+        {
+            return null;
+        }
+
+        @Override
+        public long getContentLength()
+        {
+            return "identity".equals(contentEncoding) ? super.getContentLength() : -1;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream
+    {
+        private final LongConsumer counter;
+
+        CountingInputStream(final InputStream in, final LongConsumer counter)
+        {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final int read = super.read();
+            if (read >= 0) {
+                counter.accept(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException
+        {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                counter.accept(read);
+            }
+            return read;
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntityReader<T>
+    {
+        T read(HttpEntity entity) throws IOException;
+    }
+
     private String extractErrorMessages(final String errorResponse)
     {
         final List<String> messages = new ArrayList<>();
@@ -198,9 +721,18 @@ public class JiraClient
     }
 
     @VisibleForTesting
-    public CloseableHttpClient createHttpClient()
+    public CloseableHttpClient createHttpClient(final PluginTask task)
     {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(task.getMaxConnectionsPerRoute());
+        connectionManager.setDefaultMaxPerRoute(task.getMaxConnectionsPerRoute());
+        // Compressed responses are negotiated and decoded by DecodingEntity, which also counts the bytes on the wire
         return HttpClientBuilder.create()
+                    .disableContentCompression()
+                    .setConnectionManager(connectionManager)
+                    .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                    .evictExpiredConnections()
+                    .evictIdleConnections(task.getIdleConnectionTimeoutMillis(), TimeUnit.MILLISECONDS)
                     .setDefaultRequestConfig(RequestConfig.custom()
                                                         .setConnectTimeout(HTTP_TIMEOUT)
                                                         .setConnectionRequestTimeout(HTTP_TIMEOUT)
@@ -225,6 +757,7 @@ public class JiraClient
             request.setHeader(CONTENT_TYPE, "application/json");
             break;
         }
+        setAcceptEncoding(task, request);
         request.setEntity(new StringEntity(body));
         return request;
     }
@@ -244,25 +777,50 @@ public class JiraClient
             request.setHeader(CONTENT_TYPE, "application/json");
             break;
         }
+        setAcceptEncoding(task, request);
         return request;
     }
 
-    private String createSearchIssuesBody(final PluginTask task, final String nextPageToken, final int maxResults)
+    private static void setAcceptEncoding(final PluginTask task, final HttpRequestBase request)
+    {
+        if (task.getCompressResponses()) {
+            request.setHeader(ACCEPT_ENCODING, "gzip, deflate");
+        }
+    }
+
+    private String createSearchIssuesBody(final PluginTask task, final String jql, final List<String> fields, final String nextPageToken, final int maxResults)
     {
         final JsonObject body = new JsonObject();
-        final Optional<String> jql = task.getJQL();
-        body.add("jql", new JsonPrimitive(jql.orElse("")));
+        body.add("jql", new JsonPrimitive(jql));
         if (nextPageToken != null) {
             body.add("nextPageToken", new JsonPrimitive(nextPageToken));
         }
         body.add("maxResults", new JsonPrimitive(maxResults));
-        final JsonArray fields = new JsonArray();
-        fields.add("*all");
-        body.add("fields", fields);
-        final String expands = task.getExpand().stream().collect(Collectors.joining(","));
+        final JsonArray fieldsJson = new JsonArray();
+        fields.forEach(fieldsJson::add);
+        body.add("fields", fieldsJson);
+        final String expands = JiraUtil.buildExpand(task).stream().collect(Collectors.joining(","));
         if (!expands.isEmpty()) {
             body.add("expand", new JsonPrimitive(expands));
         }
         return body.toString();
     }
+
+    private String createBulkFetchBody(final PluginTask task, final List<String> issueIdsOrKeys, final List<String> fields)
+    {
+        final JsonObject body = new JsonObject();
+        final JsonArray issueIdsOrKeysJson = new JsonArray();
+        issueIdsOrKeys.forEach(issueIdsOrKeysJson::add);
+        body.add("issueIdsOrKeys", issueIdsOrKeysJson);
+        final JsonArray fieldsJson = new JsonArray();
+        fields.forEach(fieldsJson::add);
+        body.add("fields", fieldsJson);
+        final List<String> expand = JiraUtil.buildExpand(task);
+        if (!expand.isEmpty()) {
+            final JsonArray expandJson = new JsonArray();
+            expand.forEach(expandJson::add);
+            body.add("expand", expandJson);
+        }
+        return body.toString();
+    }
 }
@@ -0,0 +1,164 @@
+package org.embulk.input.jira.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.apache.http.HttpHeaders.RETRY_AFTER;
+
+/*
+ * Client-side rate limit shared by every task of a transaction loading from the same JIRA site.
+ * The rate is halved on each 429 and grows back slowly with successful requests (AIMD),
+ * and requests are held back as long as JIRA asked with Retry-After or X-RateLimit-Reset
+ * */
+final class JiraRateLimiter
+{
+    private static final ConcurrentMap<String, JiraRateLimiter> RATE_LIMITERS = new ConcurrentHashMap<>();
+    private static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+    private static final String RATE_LIMIT_RESET = "X-RateLimit-Reset";
+    // Requests per second added back after each successful request
+    private static final double ADDITIVE_INCREASE = 0.1;
+    private static final double MIN_REQUESTS_PER_SECOND = 0.1;
+
+    private final RateLimiter rateLimiter;
+    private final double maxRequestsPerSecond;
+    private long pausedUntilMillis;
+
+    @VisibleForTesting
+    JiraRateLimiter(final double maxRequestsPerSecond)
+    {
+        this.rateLimiter = maxRequestsPerSecond > 0 ? RateLimiter.create(maxRequestsPerSecond) : null;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /*
+     * The limiter of the transaction of the task, so that a later run in the same JVM (i.e. after a guess or a preview)
+     * neither keeps a throttled rate nor ignores its own requests_per_second.
+     * A requests per second of 0 or less turns off the client-side limit, but the waits asked by JIRA are still honored
+     * */
+    static JiraRateLimiter of(final PluginTask task)
+    {
+        final double maxRequestsPerSecond = task.getRequestsPerSecond();
+        return RATE_LIMITERS.compute(getKey(task), (key, rateLimiter) ->
+                rateLimiter != null && rateLimiter.maxRequestsPerSecond == maxRequestsPerSecond ? rateLimiter : new JiraRateLimiter(maxRequestsPerSecond));
+    }
+
+    /*
+     * Forget the limiter of the transaction of the task once it is over
+     * */
+    static void release(final PluginTask task)
+    {
+        RATE_LIMITERS.remove(getKey(task));
+    }
+
+    private static String getKey(final PluginTask task)
+    {
+        // Guesses have no transaction
+        return task.getUri() + "\n" + (task.getRateLimiterId() == null ? "" : task.getRateLimiterId());
+    }
+
+    void acquire() throws InterruptedException
+    {
+        final long waitMillis;
+        synchronized (this) {
+            waitMillis = pausedUntilMillis - System.currentTimeMillis();
+        }
+        if (waitMillis > 0) {
+            Thread.sleep(waitMillis);
+        }
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+    }
+
+    synchronized void onSuccess(final HttpResponse response)
+    {
+        if (rateLimiter != null && rateLimiter.getRate() < maxRequestsPerSecond) {
+            rateLimiter.setRate(Math.min(maxRequestsPerSecond, rateLimiter.getRate() + ADDITIVE_INCREASE));
+        }
+        final Header remaining = response.getFirstHeader(RATE_LIMIT_REMAINING);
+        if (remaining != null && "0".equals(remaining.getValue().trim())) {
+            pause(parseRateLimitReset(response));
+        }
+    }
+
+    /*
+     * Return how long JIRA asked to wait, or -1 when it did not tell
+     * */
+    synchronized long onThrottled(final HttpResponse response)
+    {
+        if (rateLimiter != null) {
+            rateLimiter.setRate(Math.max(MIN_REQUESTS_PER_SECOND, rateLimiter.getRate() / 2));
+        }
+        long waitMillis = parseRetryAfter(response);
+        if (waitMillis < 0) {
+            waitMillis = parseRateLimitReset(response);
+        }
+        pause(waitMillis);
+        return waitMillis;
+    }
+
+    @VisibleForTesting
+    synchronized double getRate()
+    {
+        return rateLimiter == null ? 0 : rateLimiter.getRate();
+    }
+
+    /*
+     * Hold every request back for the given time, i.e. when JIRA asked to retry right away
+     * */
+    synchronized void pause(final long waitMillis)
+    {
+        if (waitMillis > 0) {
+            pausedUntilMillis = Math.max(pausedUntilMillis, System.currentTimeMillis() + waitMillis);
+        }
+    }
+
+    /*
+     * Retry-After is either a number of seconds or an HTTP date
+     * */
+    @VisibleForTesting
+    static long parseRetryAfter(final HttpResponse response)
+    {
+        final Header header = response.getFirstHeader(RETRY_AFTER);
+        if (header == null || header.getValue() == null) {
+            return -1;
+        }
+        final String value = header.getValue().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        }
+        catch (final NumberFormatException e) {
+            final Date date = DateUtils.parseDate(value);
+            return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    /*
+     * JIRA Cloud sends X-RateLimit-Reset as an ISO 8601 timestamp, i.e. 2021-05-12T11:17Z
+     * */
+    @VisibleForTesting
+    static long parseRateLimitReset(final HttpResponse response)
+    {
+        final Header header = response.getFirstHeader(RATE_LIMIT_RESET);
+        if (header == null || header.getValue() == null) {
+            return -1;
+        }
+        try {
+            final long resetMillis = OffsetDateTime.parse(header.getValue().trim()).toInstant().toEpochMilli();
+            return Math.max(0, resetMillis - System.currentTimeMillis());
+        }
+        catch (final DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.embulk.input.jira.client;
+
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.tuple.Pair;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Search pages kept on disk, so that guess, preview and the following runs sending the same request do not hit JIRA again.
+ * A page is stored gzipped under the hash of the request, expires after the TTL,
+ * and the least recently used pages are evicted when the directory has grown over its size limit, once the client is closed
+ * */
+final class SearchCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchCache.class);
+    private static final String SUFFIX = ".json.gz";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path directory;
+    private final long ttlMillis;
+    private final long maxBytes;
+
+    SearchCache(final Path directory, final long ttlMillis, final long maxBytes)
+    {
+        this.directory = directory;
+        this.ttlMillis = ttlMillis;
+        this.maxBytes = maxBytes;
+    }
+
+    static Optional<SearchCache> of(final PluginTask task)
+    {
+        return task.getCacheDirectory().map(directory -> new SearchCache(Paths.get(directory),
+                TimeUnit.MINUTES.toMillis(task.getCacheTtlMinutes()), task.getCacheMaxMegabytes() * 1024 * 1024));
+    }
+
+    /*
+     * The request body holds the JQL, fields, expand, page token and page size.
+     * The credential is part of the key, since what a search returns depends on the permissions of the user
+     * */
+    static String key(final PluginTask task, final String requestBody)
+    {
+        return Hashing.sha256().hashString(String.join("\n", task.getUri(), task.getUsername(), task.getPassword(), requestBody),
+                StandardCharsets.UTF_8).toString();
+    }
+
+    /*
+     * Return the cached page, or null when it is missing or expired
+     * */
+    Reader open(final String key) throws IOException
+    {
+        final Path path = directory.resolve(key + SUFFIX);
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        catch (final NoSuchFileException e) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - attributes.lastModifiedTime().toMillis() > ttlMillis) {
+            Files.deleteIfExists(path);
+            return null;
+        }
+        // The access time orders the eviction. It is set here since file systems are often mounted with noatime
+        Files.getFileAttributeView(path, BasicFileAttributeView.class).setTimes(null, FileTime.fromMillis(now), null);
+        return new InputStreamReader(new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE), StandardCharsets.UTF_8);
+    }
+
+    void remove(final String key)
+    {
+        try {
+            Files.deleteIfExists(directory.resolve(key + SUFFIX));
+        }
+        catch (final IOException e) {
+            LOGGER.warn(String.format("Could not remove the cached page %s", key), e);
+        }
+    }
+
+    Entry create(final String key) throws IOException
+    {
+        Files.createDirectories(directory);
+        return new Entry(directory.resolve(key + SUFFIX), Files.createTempFile(directory, key, ".tmp"));
+    }
+
+    /*
+     * A page being written while it is read from JIRA. It becomes visible on commit only, so a failed request never leaves a partial page
+     * */
+    final class Entry
+    {
+        private final Path path;
+        private final Path temporary;
+        private final Writer writer;
+        private boolean committed;
+
+        private Entry(final Path path, final Path temporary) throws IOException
+        {
+            this.path = path;
+            this.temporary = temporary;
+            this.writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE), StandardCharsets.UTF_8);
+        }
+
+        /*
+         * Copy what is read from the reader to the entry
+         * */
+        Reader tee(final Reader reader)
+        {
+            return new FilterReader(reader)
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    final int read = super.read();
+                    if (read >= 0) {
+                        writer.write(read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public int read(final char[] buffer, final int offset, final int length) throws IOException
+                {
+                    final int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        writer.write(buffer, offset, read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        void commit() throws IOException
+        {
+            writer.close();
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        void discard()
+        {
+            if (committed) {
+                return;
+            }
+            try {
+                writer.close();
+                Files.deleteIfExists(temporary);
+            }
+            catch (final IOException e) {
+                LOGGER.warn(String.format("Could not remove the temporary file %s", temporary), e);
+            }
+        }
+    }
+
+    /*
+     * Remove the expired pages, then the least recently used ones until the cache fits in its size limit.
+     * Failures are only logged, since the pages loaded before are fine
+     * */
+    void evict()
+    {
+        try {
+            evictPages();
+        }
+        catch (final IOException e) {
+            LOGGER.warn(String.format("Could not evict the cached pages of %s", directory), e);
+        }
+    }
+
+    private void evictPages() throws IOException
+    {
+        final long now = System.currentTimeMillis();
+        final List<Pair<Path, BasicFileAttributes>> pages = new ArrayList<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (final Path path : stream) {
+                try {
+                    final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (now - attributes.lastModifiedTime().toMillis() > ttlMillis) {
+                        Files.deleteIfExists(path);
+                        continue;
+                    }
+                    pages.add(Pair.of(path, attributes));
+                    totalBytes += attributes.size();
+                }
+                catch (final NoSuchFileException e) {
+                    // Removed by another task in the meantime
+                }
+            }
+        }
+        pages.sort(Comparator.comparing(page -> page.getRight().lastAccessTime()));
+        for (final Pair<Path, BasicFileAttributes> page : pages) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            Files.deleteIfExists(page.getLeft());
+            totalBytes -= page.getRight().size();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.embulk.input.jira.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.embulk.input.jira.Issue;
+import org.embulk.input.jira.IssueKeys;
+
+import java.util.function.Consumer;
+
+/*
+ * Turn the changelog of an issue into one row per changed item, so that the columns of a row are
+ * the issue it belongs to, the history (author, created) and the item (field, from, to)
+ * */
+public final class ChangelogItems
+{
+    // The columns of a row, in the order of its values
+    private static final IssueKeys ROW_KEYS = new IssueKeys("issue_id", "issue_key", "history_id", "author", "created",
+            "field", "field_type", "field_id", "from", "from_string", "to", "to_string");
+
+    private ChangelogItems() {}
+
+    public static void forEach(final Issue issue, final Consumer<Issue> consumer)
+    {
+        final JsonElement histories = issue.getValue("changelog.histories");
+        if (!histories.isJsonArray()) {
+            return;
+        }
+        final JsonElement issueId = issue.getValue("id");
+        final JsonElement issueKey = issue.getValue("key");
+        for (final JsonElement history : histories.getAsJsonArray()) {
+            if (!history.isJsonObject()) {
+                continue;
+            }
+            final JsonObject historyObject = history.getAsJsonObject();
+            final JsonElement items = historyObject.get("items");
+            if (items == null || !items.isJsonArray()) {
+                continue;
+            }
+            for (final JsonElement item : items.getAsJsonArray()) {
+                if (!item.isJsonObject()) {
+                    continue;
+                }
+                final JsonObject itemObject = item.getAsJsonObject();
+                consumer.accept(new Issue(ROW_KEYS, new JsonElement[] {
+                    issueId,
+                    issueKey,
+                    get(historyObject, "id"),
+                    get(historyObject, "author"),
+                    get(historyObject, "created"),
+                    get(itemObject, "field"),
+                    get(itemObject, "fieldtype"),
+                    get(itemObject, "fieldId"),
+                    get(itemObject, "from"),
+                    get(itemObject, "fromString"),
+                    get(itemObject, "to"),
+                    get(itemObject, "toString")
+                }));
+            }
+        }
+    }
+
+    private static JsonElement get(final JsonObject json, final String key)
+    {
+        final JsonElement value = json.get(key);
+        return value == null ? JsonNull.INSTANCE : value;
+    }
+}
@@ -0,0 +1,56 @@
+package org.embulk.input.jira.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import org.embulk.input.jira.Issue;
+import org.embulk.input.jira.IssueKeys;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+/*
+ * Tombstone rows of the issues which matched the JQL in the previous run but do not anymore,
+ * because they have been deleted or moved out of its scope
+ * */
+public final class DeletedIssues
+{
+    // The columns of a row, in the order of its values
+    private static final IssueKeys ROW_KEYS = new IssueKeys("id", "deleted", "detected_at");
+    private static final JsonPrimitive DELETED = new JsonPrimitive(true);
+    // As JIRA formats timestamps, "Z" being written +0000
+    private static final DateTimeFormatter DETECTED_AT_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSxx");
+
+    private DeletedIssues() {}
+
+    public static String now()
+    {
+        return OffsetDateTime.now(ZoneOffset.UTC).format(DETECTED_AT_FORMATTER);
+    }
+
+    /*
+     * Both arrays of ids are sorted in ascending order
+     * */
+    public static void forEach(final long[] previousIds, final long[] currentIds, final String detectedAt, final Consumer<Issue> consumer)
+    {
+        int current = 0;
+        for (final long id : previousIds) {
+            while (current < currentIds.length && currentIds[current] < id) {
+                current++;
+            }
+            if (current == currentIds.length || currentIds[current] != id) {
+                consumer.accept(createRow(new JsonPrimitive(id), detectedAt));
+            }
+        }
+    }
+
+    public static Issue createRow(final JsonElement id, final String detectedAt)
+    {
+        return new Issue(ROW_KEYS, new JsonElement[] {
+            id,
+            DELETED,
+            new JsonPrimitive(detectedAt)
+        });
+    }
+}
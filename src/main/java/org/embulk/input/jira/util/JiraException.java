@@ -4,15 +4,30 @@ public class JiraException extends Exception
 {
     private static final long serialVersionUID = -256731723520584046L;
     private final int statusCode;
+    private final long retryAfterMillis;
 
     public JiraException(int statusCode, String message)
+    {
+        this(statusCode, message, -1);
+    }
+
+    public JiraException(int statusCode, String message, long retryAfterMillis)
     {
         super(message + ":" + Integer.toString(statusCode));
         this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
     }
 
     public int getStatusCode()
     {
         return statusCode;
     }
+
+    /*
+     * How long JIRA asked to wait before the next request, or -1 when it did not tell
+     * */
+    public long getRetryAfterMillis()
+    {
+        return retryAfterMillis;
+    }
 }
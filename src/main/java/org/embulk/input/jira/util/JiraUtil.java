@@ -3,44 +3,53 @@ package org.embulk.input.jira.util;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 import org.embulk.config.ConfigException;
-import org.embulk.config.ConfigSource;
 import org.embulk.input.jira.Issue;
 import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.PartitionBy;
+import org.embulk.input.jira.RecordMode;
+import org.embulk.input.jira.Subresource;
 import org.embulk.spi.Column;
-import org.embulk.spi.ColumnVisitor;
 import org.embulk.spi.PageBuilder;
 import org.embulk.spi.Schema;
-import org.embulk.util.config.units.ColumnConfig;
-import org.embulk.util.json.JsonParser;
-import org.embulk.util.timestamp.TimestampFormatter;
 
 import javax.ws.rs.core.UriBuilder;
 
 import java.io.IOException;
-import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.embulk.input.jira.Constant.ALL_FIELDS;
+import static org.embulk.input.jira.Constant.APPROXIMATE_COUNT_URI_PATH;
+import static org.embulk.input.jira.Constant.BULK_FETCH_URI_PATH;
 import static org.embulk.input.jira.Constant.CREDENTIAL_URI_PATH;
-import static org.embulk.input.jira.Constant.DEFAULT_TIMESTAMP_PATTERN;
-import static org.embulk.input.jira.Constant.HTTP_TIMEOUT;
+import static org.embulk.input.jira.Constant.ISSUE_ATTRIBUTES;
+import static org.embulk.input.jira.Constant.JQL_DATE_PATTERN;
 import static org.embulk.input.jira.Constant.SEARCH_URI_PATH;
 
 public final class JiraUtil
 {
+    private static final DateTimeFormatter JIRA_TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXX");
+    private static final DateTimeFormatter JQL_DATE_FORMATTER = DateTimeFormatter.ofPattern(JQL_DATE_PATTERN);
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile("(?i)(?:^|\\s)order\\s+by\\s");
+
     private JiraUtil() {}
 
-    public static int calculateTotalPage(final int totalCount, final int resultPerPage)
+    public static int calculateTotalPage(final long totalCount, final int resultPerPage)
     {
         return (int) Math.ceil((double) totalCount / resultPerPage);
     }
@@ -55,214 +64,290 @@ public final class JiraUtil
         return UriBuilder.fromUri(url).path(SEARCH_URI_PATH).build().toString();
     }
 
-    public static void validateTaskConfig(final PluginTask task)
+    public static String buildApproximateCountUrl(final String url)
     {
-        final String username = task.getUsername();
-        if (isNullOrEmpty(username)) {
-            throw new ConfigException("Username or email could not be empty");
+        return UriBuilder.fromUri(url).path(APPROXIMATE_COUNT_URI_PATH).build().toString();
+    }
+
+    public static String buildBulkFetchUrl(final String url)
+    {
+        return UriBuilder.fromUri(url).path(BULK_FETCH_URI_PATH).build().toString();
+    }
+
+    public static String buildIssueResourceUrl(final String url, final String path, final String issueKey, final int startAt, final int maxResults)
+    {
+        return UriBuilder.fromUri(url).path(path)
+                .queryParam("startAt", startAt)
+                .queryParam("maxResults", maxResults)
+                .build(issueKey).toString();
+    }
+
+    /*
+     * The entities expanded in search results: the configured ones plus those needed by other options
+     * */
+    public static List<String> buildExpand(final PluginTask task)
+    {
+        // Only the ids of the issues are read
+        if (task.getRecordMode() == RecordMode.DELETED_ISSUES) {
+            return new ArrayList<>();
         }
-        final String password = task.getPassword();
-        if (isNullOrEmpty(password)) {
-            throw new ConfigException("Password could not be empty");
+        final Set<String> expand = new LinkedHashSet<>(task.getExpand());
+        if (task.getFetchFullChangelog() || task.getRecordMode() == RecordMode.CHANGELOG_ITEMS) {
+            expand.add("changelog");
         }
-        final String uri = task.getUri();
-        if (isNullOrEmpty(uri)) {
-            throw new ConfigException("JIRA API endpoint could not be empty");
+        return new ArrayList<>(expand);
+    }
+
+    /*
+     * AND the condition onto the JQL, keeping the ORDER BY clause of the JQL at the end
+     * */
+    public static String appendJqlCondition(final String jql, final String condition)
+    {
+        if (isNullOrEmpty(condition)) {
+            return jql;
         }
-        try (CloseableHttpClient client = HttpClientBuilder.create()
-                                            .setDefaultRequestConfig(RequestConfig.custom()
-                                                                                .setConnectTimeout(HTTP_TIMEOUT)
-                                                                                .setConnectionRequestTimeout(HTTP_TIMEOUT)
-                                                                                .setSocketTimeout(HTTP_TIMEOUT)
-                                                                                .setCookieSpec(CookieSpecs.STANDARD)
-                                                                                .build())
-                                            .build()) {
-            final HttpGet request = new HttpGet(uri);
-            try (CloseableHttpResponse response = client.execute(request)) {
-                response.getStatusLine().getStatusCode();
-            }
+        String where = isNullOrEmpty(jql) ? "" : jql;
+        String orderBy = "";
+        final Matcher matcher = ORDER_BY_PATTERN.matcher(where);
+        if (matcher.find()) {
+            orderBy = where.substring(matcher.start()).trim();
+            where = where.substring(0, matcher.start());
         }
-        catch (IOException | IllegalArgumentException e) {
-            throw new ConfigException("JIRA API endpoint is incorrect or not available");
+        where = where.trim();
+        final String combined = where.isEmpty() ? condition : String.format("(%s) AND %s", where, condition);
+        return orderBy.isEmpty() ? combined : combined + " " + orderBy;
+    }
+
+    /*
+     * Replace the ORDER BY clause of the JQL, or add one when it has none
+     * */
+    public static String replaceJqlOrderBy(final String jql, final String orderBy)
+    {
+        String where = isNullOrEmpty(jql) ? "" : jql;
+        final Matcher matcher = ORDER_BY_PATTERN.matcher(where);
+        if (matcher.find()) {
+            where = where.substring(0, matcher.start());
         }
-        final int retryInitialWaitSec = task.getInitialRetryIntervalMillis();
-        if (retryInitialWaitSec < 1) {
-            throw new ConfigException("Initial retry delay should be equal or greater than 1");
+        where = where.trim();
+        return where.isEmpty() ? orderBy : where + " " + orderBy;
+    }
+
+    public static String quoteJqlValue(final String value)
+    {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /*
+     * The user's JQL, restricted to the issues updated since the previous run when loading incrementally.
+     * Deletions are detected over the whole JQL, so record_mode deleted_issues is never restricted
+     * */
+    public static String buildTransactionJql(final PluginTask task)
+    {
+        final String jql = task.getJQL().orElse("");
+        if (task.getIncremental() && task.getRecordMode() != RecordMode.DELETED_ISSUES && task.getLastUpdated().isPresent()) {
+            return appendJqlCondition(jql, buildUpdatedSinceCondition(task.getLastUpdated().get(), task.getIncrementalOverlapMinutes()));
         }
-        final int retryLimit = task.getRetryLimit();
-        if (retryLimit < 0 || retryLimit > 10) {
-            throw new ConfigException("Retry limit should between 0 and 10");
+        return jql;
+    }
+
+    /*
+     * The JQL of a task is the user's JQL restricted to the partition of the task
+     * */
+    public static String buildTaskJql(final PluginTask task, final int taskIndex)
+    {
+        final String jql = buildTransactionJql(task);
+        final List<String> partitions = task.getPartitions();
+        if (partitions == null || partitions.isEmpty()) {
+            return jql;
         }
+        return appendJqlCondition(jql, partitions.get(taskIndex));
     }
 
     /*
-     * For getting the timestamp value of the node
-     * Sometime if the parser could not parse the value then return null
+     * JQL dates have no time zone and are read in the time zone of the JIRA user.
+     * The local time of the stored timestamp is used since JIRA returns timestamps in that same time zone
      * */
-    private static Instant getTimestampValue(final PluginTask task, final Column column, final String value)
+    public static String buildUpdatedSinceCondition(final String lastUpdated, final int overlapMinutes)
     {
-        final List<ColumnConfig> columnConfigs = task.getColumns().getColumns();
-        String pattern = DEFAULT_TIMESTAMP_PATTERN;
-        for (final ColumnConfig columnConfig : columnConfigs) {
-            final ConfigSource columnConfigSource = columnConfig.getConfigSource();
-            if (columnConfig.getName().equals(column.getName())
-                    && columnConfigSource != null
-                    && columnConfigSource.has("format")) {
-                pattern = columnConfigSource.get(String.class, "format");
-                break;
-            }
+        final OffsetDateTime since = parseJiraTimestamp(lastUpdated);
+        if (since == null) {
+            throw new ConfigException(String.format("Could not parse last_updated '%s'", lastUpdated));
         }
-        final TimestampFormatter formatter = TimestampFormatter
-                .builder(pattern, true)
-                .setDefaultZoneFromString("UTC")
-                .build();
+        return String.format("updated >= %s", quoteJqlValue(since.minusMinutes(overlapMinutes).format(JQL_DATE_FORMATTER)));
+    }
+
+    /*
+     * For parsing a timestamp in the format returned by JIRA (i.e 2019-01-01T00:00:00.000+0000)
+     * Return null if the value is not in that format
+     * */
+    public static OffsetDateTime parseJiraTimestamp(final String value)
+    {
         try {
-            return formatter.parse(value);
+            return OffsetDateTime.parse(value, JIRA_TIMESTAMP_FORMATTER);
         }
-        catch (final Exception e) {
+        catch (final DateTimeParseException e) {
             return null;
         }
     }
 
+    public static String maxTimestamp(final String current, final JsonElement candidate)
+    {
+        if (candidate == null || !candidate.isJsonPrimitive()) {
+            return current;
+        }
+        return maxTimestamp(current, candidate.getAsString());
+    }
+
     /*
-     * For getting the Long value of the node
-     * Sometime if error occurs (i.e a JSON value but user modified it as long) then return null
+     * Return the later of two JIRA timestamps, ignoring the one which could not be parsed
      * */
-    private static Long getLongValue(final JsonElement value)
+    public static String maxTimestamp(final String current, final String candidate)
     {
-        try {
-            return value.getAsLong();
+        final OffsetDateTime candidateTime = candidate == null ? null : parseJiraTimestamp(candidate);
+        if (candidateTime == null) {
+            return current;
         }
-        catch (final Exception e) {
-            return null;
+        final OffsetDateTime currentTime = current == null ? null : parseJiraTimestamp(current);
+        if (currentTime == null || candidateTime.isAfter(currentTime)) {
+            return candidate;
         }
+        return current;
     }
 
     /*
-     * For getting the Double value of the node
-     * Sometime if error occurs (i.e a JSON value but user modified it as double) then return null
+     * Request only the fields referenced by the columns, i.e. "assignee" for the column "assignee.name".
+     * Attributes which are not fields (id, key, expanded entities...) are always in the response so are skipped
      * */
-    private static Double getDoubleValue(final JsonElement value)
+    public static List<String> buildRequestFields(final PluginTask task, final Schema schema)
     {
-        try {
-            return value.getAsDouble();
+        if (task.getRecordMode() == RecordMode.DELETED_ISSUES) {
+            return Collections.singletonList("id");
         }
-        catch (final Exception e) {
-            return null;
+        if (task.getFetchAllFields() || schema.getColumnCount() == 0) {
+            return ALL_FIELDS;
         }
+        final List<String> expand = buildExpand(task);
+        final Set<String> fields = new LinkedHashSet<>();
+        // Columns of changelog items are not fields, only the changelog is needed
+        if (task.getRecordMode() == RecordMode.ISSUES) {
+            for (final Column column : schema.getColumns()) {
+                final String name = column.getName();
+                final int separator = name.indexOf('.');
+                final String field = separator < 0 ? name : name.substring(0, separator);
+                if (!field.isEmpty() && !ISSUE_ATTRIBUTES.contains(field) && !expand.contains(field)) {
+                    fields.add(field);
+                }
+            }
+            // Subresources are completed only when they are truncated, so their fields are needed
+            for (final Subresource subresource : task.getFetchSubresources()) {
+                fields.add(subresource.getField());
+            }
+        }
+        if (task.getIncremental()) {
+            fields.add("updated");
+        }
+        if (fields.isEmpty()) {
+            // An empty list means the default fields for JIRA, so request only the id
+            fields.add("id");
+        }
+        return new ArrayList<>(fields);
     }
 
     /*
-     * For getting the Boolean value of the node
-     * Sometime if error occurs (i.e a JSON value but user modified it as boolean) then return null
+     * Check the configuration and that the JIRA API endpoint answers
      * */
-    private static Boolean getBooleanValue(final JsonElement value)
+    public static void validateTaskConfig(final PluginTask task, final CloseableHttpClient client)
     {
+        validateTaskConfig(task);
         try {
-            return value.getAsBoolean();
+            final HttpGet request = new HttpGet(task.getUri());
+            try (CloseableHttpResponse response = client.execute(request)) {
+                response.getStatusLine().getStatusCode();
+                // Consume the body so the connection goes back to the pool for the following requests
+                EntityUtils.consume(response.getEntity());
+            }
         }
-        catch (final Exception e) {
-            return null;
+        catch (IOException | IllegalArgumentException e) {
+            throw new ConfigException("JIRA API endpoint is incorrect or not available");
         }
     }
 
-    public static void addRecord(final Issue issue, final Schema schema, final PluginTask task, final PageBuilder pageBuilder)
+    /*
+     * Check the configuration without sending any request, i.e. before the transaction plans its partitions
+     * */
+    public static void validateTaskConfig(final PluginTask task)
     {
-        schema.visitColumns(new ColumnVisitor() {
-            @Override
-            public void jsonColumn(final Column column)
-            {
-                final JsonElement data = issue.getValue(column.getName());
-                if (data.isJsonNull() || data.isJsonPrimitive()) {
-                    pageBuilder.setNull(column);
-                }
-                else {
-                    pageBuilder.setJson(column, new JsonParser().parse(data.toString()));
-                }
+        final String username = task.getUsername();
+        if (isNullOrEmpty(username)) {
+            throw new ConfigException("Username or email could not be empty");
+        }
+        final String password = task.getPassword();
+        if (isNullOrEmpty(password)) {
+            throw new ConfigException("Password could not be empty");
+        }
+        final String uri = task.getUri();
+        if (isNullOrEmpty(uri)) {
+            throw new ConfigException("JIRA API endpoint could not be empty");
+        }
+        final int retryInitialWaitSec = task.getInitialRetryIntervalMillis();
+        if (retryInitialWaitSec < 1) {
+            throw new ConfigException("Initial retry delay should be equal or greater than 1");
+        }
+        final int retryLimit = task.getRetryLimit();
+        if (retryLimit < 0 || retryLimit > 10) {
+            throw new ConfigException("Retry limit should between 0 and 10");
+        }
+        if (task.getPrefetchPages() < 0) {
+            throw new ConfigException("Prefetch pages should be equal or greater than 0");
+        }
+        if (task.getSubresourceThreads() < 1) {
+            throw new ConfigException("Subresource threads should be equal or greater than 1");
+        }
+        if (task.getCacheTtlMinutes() < 1) {
+            throw new ConfigException("Cache TTL minutes should be equal or greater than 1");
+        }
+        if (task.getCacheMaxMegabytes() < 1) {
+            throw new ConfigException("Cache max megabytes should be equal or greater than 1");
+        }
+        if (task.getGuessSampleSize() < 1) {
+            throw new ConfigException("Guess sample size should be equal or greater than 1");
+        }
+        if (task.getRecordMode() == RecordMode.DELETED_ISSUES) {
+            if (!task.getIdSnapshotFile().isPresent()) {
+                throw new ConfigException("id_snapshot_file is required when record_mode is deleted_issues");
             }
-
-            @Override
-            public void stringColumn(final Column column)
-            {
-                final JsonElement data = issue.getValue(column.getName());
-                if (data.isJsonNull()) {
-                    pageBuilder.setNull(column);
-                }
-                else if (data.isJsonPrimitive()) {
-                    pageBuilder.setString(column, data.getAsString());
-                }
-                else if (data.isJsonArray()) {
-                    pageBuilder.setString(column, StreamSupport.stream(data.getAsJsonArray().spliterator(), false)
-                            .map(obj -> {
-                                if (obj.isJsonPrimitive()) {
-                                    return obj.getAsString();
-                                }
-                                return obj.toString();
-                            })
-                            .collect(Collectors.joining(",")));
-                }
-                else {
-                    pageBuilder.setString(column, data.toString());
-                }
+            if (task.getPartitionBy() != PartitionBy.NONE) {
+                throw new ConfigException("partition_by could not be used when record_mode is deleted_issues");
             }
-
-            @Override
-            @SuppressWarnings("deprecation") // TODO: For compatibility with Embulk v0.9
-            public void timestampColumn(final Column column)
-            {
-                final JsonElement data = issue.getValue(column.getName());
-                if (data.isJsonNull() || data.isJsonObject() || data.isJsonArray()) {
-                    pageBuilder.setNull(column);
-                }
-                else {
-                    final Instant value = getTimestampValue(task, column, data.getAsString());
-                    if (value == null) {
-                        pageBuilder.setNull(column);
-                    }
-                    else {
-                        // TODO: Use Instant instead of Timestamp
-                        pageBuilder.setTimestamp(column, org.embulk.spi.time.Timestamp.ofInstant(value));
-                    }
-                }
+        }
+        if (task.getBulkFetchThreads() < 1) {
+            throw new ConfigException("Bulk fetch threads should be equal or greater than 1");
+        }
+        if (!task.getIssueKeys().isEmpty() || task.getIssueIdsFile().isPresent()) {
+            if (task.getRecordMode() == RecordMode.DELETED_ISSUES) {
+                throw new ConfigException("issue_keys and issue_ids_file could not be used when record_mode is deleted_issues");
             }
-
-            @Override
-            public void booleanColumn(final Column column)
-            {
-                final Boolean value = getBooleanValue(issue.getValue(column.getName()));
-                if (value == null) {
-                    pageBuilder.setNull(column);
-                }
-                else {
-                    pageBuilder.setBoolean(column, value);
-                }
+            if (task.getPartitionBy() != PartitionBy.NONE) {
+                throw new ConfigException("partition_by could not be used with issue_keys and issue_ids_file");
             }
-
-            @Override
-            public void longColumn(final Column column)
-            {
-                final Long value = getLongValue(issue.getValue(column.getName()));
-                if (value == null) {
-                    pageBuilder.setNull(column);
-                }
-                else {
-                    pageBuilder.setLong(column, value);
-                }
+            if (task.getIncremental()) {
+                throw new ConfigException("incremental could not be used with issue_keys and issue_ids_file");
             }
+        }
+        if (task.getSearchChains() < 1) {
+            throw new ConfigException("Search chains should be equal or greater than 1");
+        }
+        if (task.getSearchChains() > 1 && task.getCheckpointDirectory().isPresent()) {
+            throw new ConfigException("checkpoint_directory could not be used when search_chains is greater than 1");
+        }
+    }
 
-            @Override
-            public void doubleColumn(final Column column)
-            {
-                final Double value = getDoubleValue(issue.getValue(column.getName()));
-                if (value == null) {
-                    pageBuilder.setNull(column);
-                }
-                else {
-                    pageBuilder.setDouble(column, value);
-                }
-            }
-        });
-        pageBuilder.addRecord();
+    /*
+     * Kept for callers that add a single record; tasks compile a RecordPlan once and reuse it
+     * */
+    public static void addRecord(final Issue issue, final Schema schema, final PluginTask task, final PageBuilder pageBuilder)
+    {
+        new RecordPlan(schema, task).addRecord(issue, pageBuilder);
     }
 
     public static LinkedHashMap<String, Object> toLinkedHashMap(final JsonObject flt)
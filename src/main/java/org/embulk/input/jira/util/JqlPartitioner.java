@@ -0,0 +1,284 @@
+package org.embulk.input.jira.util;
+
+import org.embulk.config.ConfigException;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.PartitionBy;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import static org.embulk.input.jira.Constant.JQL_DATE_PATTERN;
+
+/*
+ * Split the JQL of a task into disjoint conditions, one per Embulk task.
+ * Each condition is AND-ed onto the user's JQL, and the union of all conditions covers every issue.
+ * */
+public final class JqlPartitioner
+{
+    private static final DateTimeFormatter JQL_DATE_FORMATTER = DateTimeFormatter.ofPattern(JQL_DATE_PATTERN);
+    // Counts sent to place one boundary of created partitions
+    private static final int MAX_PROBES = 16;
+
+    private JqlPartitioner() {}
+
+    public static List<String> createPartitions(final PluginTask task)
+    {
+        final int maxTasks = task.getMaxTasks();
+        if (maxTasks < 1) {
+            throw new ConfigException("Max tasks should be equal or greater than 1");
+        }
+        switch (task.getPartitionBy()) {
+        case CREATED:
+            return createCreatedPartitions(task, maxTasks);
+        case PROJECT:
+            return createProjectPartitions(task.getPartitionProjects(), maxTasks);
+        default:
+            return Collections.emptyList();
+        }
+    }
+
+    /*
+     * Partitions placed by the approximate number of issues they match, so that the tasks load about as many issues.
+     * The counter tells the issues of the JQL of the transaction restricted to a condition, the empty condition being all of them.
+     * No more tasks than pages of max_results issues are created
+     * */
+    public static List<String> createBalancedPartitions(final PluginTask task, final ToLongFunction<String> counter)
+    {
+        final int maxTasks = task.getMaxTasks();
+        if (maxTasks < 1) {
+            throw new ConfigException("Max tasks should be equal or greater than 1");
+        }
+        if (task.getPartitionBy() == PartitionBy.NONE) {
+            return Collections.emptyList();
+        }
+        final long total = counter.applyAsLong("");
+        final int taskCount = Math.max(1, Math.min(maxTasks, JiraUtil.calculateTotalPage(total, task.getMaxResults())));
+        switch (task.getPartitionBy()) {
+        case CREATED:
+            return createBalancedCreatedPartitions(task, taskCount, total, counter);
+        case PROJECT:
+            return createBalancedProjectPartitions(task.getPartitionProjects(), taskCount, total, counter);
+        default:
+            return Collections.emptyList();
+        }
+    }
+
+    /*
+     * Each boundary is searched by bisection of the created range, down to the minute or MAX_PROBES counts
+     * */
+    private static List<String> createBalancedCreatedPartitions(final PluginTask task, final int taskCount, final long total,
+            final ToLongFunction<String> counter)
+    {
+        final LocalDateTime[] range = getCreatedRange(task);
+        final TreeSet<String> boundaries = new TreeSet<>();
+        LocalDateTime low = range[0];
+        for (int i = 1; i < taskCount; i++) {
+            final long target = total * i / taskCount;
+            LocalDateTime high = range[1];
+            for (int probe = 0; probe < MAX_PROBES && Duration.between(low, high).toMinutes() >= 1; probe++) {
+                final LocalDateTime middle = low.plus(Duration.between(low, high).dividedBy(2));
+                if (counter.applyAsLong(String.format("created < %s", JiraUtil.quoteJqlValue(middle.format(JQL_DATE_FORMATTER)))) < target) {
+                    low = middle;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            boundaries.add(high.format(JQL_DATE_FORMATTER));
+            low = high;
+        }
+        return createCreatedPartitions(new ArrayList<>(boundaries));
+    }
+
+    /*
+     * The largest projects are placed first, each onto the partition having the fewest issues so far.
+     * The last partition starts with the issues of the projects which are not listed
+     * */
+    private static List<String> createBalancedProjectPartitions(final List<String> projects, final int taskCount, final long total,
+            final ToLongFunction<String> counter)
+    {
+        if (projects.isEmpty()) {
+            throw new ConfigException("partition_projects could not be empty when partition_by is project");
+        }
+        final int groupCount = Math.min(taskCount, projects.size());
+        if (groupCount < 2) {
+            return new ArrayList<>();
+        }
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        long listed = 0;
+        for (final String project : projects) {
+            final long count = counter.applyAsLong(String.format("project = %s", JiraUtil.quoteJqlValue(project)));
+            counts.put(project, count);
+            listed += count;
+        }
+        final List<List<String>> groups = new ArrayList<>();
+        final long[] loads = new long[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(new ArrayList<>());
+        }
+        loads[groupCount - 1] = Math.max(0, total - listed);
+        final List<String> sorted = new ArrayList<>(projects);
+        sorted.sort(Comparator.comparing(counts::get).reversed());
+        for (final String project : sorted) {
+            int lightest = 0;
+            for (int i = 1; i < groupCount; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            groups.get(lightest).add(project);
+            loads[lightest] += counts.get(project);
+        }
+        return createProjectPartitions(groups);
+    }
+
+    private static List<String> createCreatedPartitions(final PluginTask task, final int maxTasks)
+    {
+        final LocalDateTime[] range = getCreatedRange(task);
+        final LocalDateTime from = range[0];
+        final LocalDateTime to = range[1];
+        final Duration step = Duration.between(from, to).dividedBy(maxTasks);
+        // JQL dates have minute precision, so boundaries that collapse into the same minute are merged
+        final TreeSet<String> boundaries = new TreeSet<>();
+        for (int i = 1; i < maxTasks; i++) {
+            boundaries.add(from.plus(step.multipliedBy(i)).format(JQL_DATE_FORMATTER));
+        }
+        return createCreatedPartitions(new ArrayList<>(boundaries));
+    }
+
+    /*
+     * The first and the last partition are open-ended so issues created outside of the configured range are not lost
+     * */
+    public static List<String> createCreatedPartitions(final List<String> boundaries)
+    {
+        final List<String> partitions = new ArrayList<>();
+        if (boundaries.isEmpty()) {
+            return partitions;
+        }
+        partitions.add(String.format("created < %s", JiraUtil.quoteJqlValue(boundaries.get(0))));
+        for (int i = 1; i < boundaries.size(); i++) {
+            partitions.add(String.format("created >= %s AND created < %s",
+                    JiraUtil.quoteJqlValue(boundaries.get(i - 1)),
+                    JiraUtil.quoteJqlValue(boundaries.get(i))));
+        }
+        partitions.add(String.format("created >= %s", JiraUtil.quoteJqlValue(boundaries.get(boundaries.size() - 1))));
+        return partitions;
+    }
+
+    /*
+     * Ranges of issue ids of equal width between the smallest and the largest id of the JQL.
+     * As for created partitions, the first and the last range are open-ended
+     * */
+    public static List<String> createIdPartitions(final long minId, final long maxId, final int count)
+    {
+        final List<String> partitions = new ArrayList<>();
+        final TreeSet<Long> boundaries = new TreeSet<>();
+        final long width = maxId - minId + 1;
+        for (int i = 1; i < count; i++) {
+            boundaries.add(minId + width * i / count);
+        }
+        // A boundary at the smallest id would leave the first range empty
+        boundaries.remove(minId);
+        if (boundaries.isEmpty()) {
+            return partitions;
+        }
+        final List<Long> sorted = new ArrayList<>(boundaries);
+        partitions.add(String.format("id < %d", sorted.get(0)));
+        for (int i = 1; i < sorted.size(); i++) {
+            partitions.add(String.format("id >= %d AND id < %d", sorted.get(i - 1), sorted.get(i)));
+        }
+        partitions.add(String.format("id >= %d", sorted.get(sorted.size() - 1)));
+        return partitions;
+    }
+
+    /*
+     * Projects are distributed round-robin. The last partition takes every project not listed in the others,
+     * so issues of projects missing from partition_projects are still loaded
+     * */
+    public static List<String> createProjectPartitions(final List<String> projects, final int maxTasks)
+    {
+        if (projects.isEmpty()) {
+            throw new ConfigException("partition_projects could not be empty when partition_by is project");
+        }
+        final int groupCount = Math.min(maxTasks, projects.size());
+        final List<String> partitions = new ArrayList<>();
+        if (groupCount < 2) {
+            return partitions;
+        }
+        final List<List<String>> groups = new ArrayList<>();
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < projects.size(); i++) {
+            groups.get(i % groupCount).add(projects.get(i));
+        }
+        return createProjectPartitions(groups);
+    }
+
+    /*
+     * Groups left empty are dropped, except the last one which also takes the projects not listed
+     * */
+    private static List<String> createProjectPartitions(final List<List<String>> groups)
+    {
+        final int groupCount = groups.size();
+        final List<String> partitions = new ArrayList<>();
+        final List<String> assigned = new ArrayList<>();
+        for (int i = 0; i < groupCount - 1; i++) {
+            if (groups.get(i).isEmpty()) {
+                continue;
+            }
+            partitions.add(String.format("project in (%s)", joinJqlValues(groups.get(i))));
+            assigned.addAll(groups.get(i));
+        }
+        if (partitions.isEmpty()) {
+            return partitions;
+        }
+        partitions.add(String.format("project not in (%s)", joinJqlValues(assigned)));
+        return partitions;
+    }
+
+    private static LocalDateTime[] getCreatedRange(final PluginTask task)
+    {
+        final LocalDateTime from = parseDateTime(task.getPartitionCreatedFrom()
+                .orElseThrow(() -> new ConfigException("partition_created_from is required when partition_by is created")));
+        final Optional<String> createdTo = task.getPartitionCreatedTo();
+        final LocalDateTime to = createdTo.isPresent() ? parseDateTime(createdTo.get()) : LocalDateTime.now();
+        if (!from.isBefore(to)) {
+            throw new ConfigException("partition_created_from should be before partition_created_to");
+        }
+        return new LocalDateTime[] {from, to};
+    }
+
+    private static String joinJqlValues(final List<String> values)
+    {
+        return values.stream().map(JiraUtil::quoteJqlValue).collect(Collectors.joining(", "));
+    }
+
+    private static LocalDateTime parseDateTime(final String value)
+    {
+        try {
+            return LocalDateTime.parse(value, JQL_DATE_FORMATTER);
+        }
+        catch (final DateTimeParseException e) {
+            try {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            catch (final DateTimeParseException ex) {
+                throw new ConfigException(String.format("Could not parse '%s' as a date, expected yyyy-MM-dd or yyyy-MM-dd HH:mm", value));
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.embulk.input.jira.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+import java.math.BigInteger;
+import java.util.Map.Entry;
+
+/*
+ * Convert a Gson tree to a msgpack value directly,
+ * giving the same result as serializing it and parsing it again with org.embulk.util.json.JsonParser
+ * */
+public final class JsonValueConverter
+{
+    private JsonValueConverter() {}
+
+    public static Value toValue(final JsonElement json)
+    {
+        if (json == null || json.isJsonNull()) {
+            return ValueFactory.newNil();
+        }
+        if (json.isJsonObject()) {
+            final JsonObject object = json.getAsJsonObject();
+            final Value[] keyValues = new Value[object.size() * 2];
+            int i = 0;
+            for (final Entry<String, JsonElement> entry : object.entrySet()) {
+                keyValues[i++] = ValueFactory.newString(entry.getKey());
+                keyValues[i++] = toValue(entry.getValue());
+            }
+            return ValueFactory.newMap(keyValues);
+        }
+        if (json.isJsonArray()) {
+            final JsonArray array = json.getAsJsonArray();
+            final Value[] values = new Value[array.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = toValue(array.get(i));
+            }
+            return ValueFactory.newArray(values, true);
+        }
+        final JsonPrimitive primitive = json.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return ValueFactory.newBoolean(primitive.getAsBoolean());
+        }
+        if (primitive.isNumber()) {
+            return toNumberValue(primitive.getAsString());
+        }
+        return ValueFactory.newString(primitive.getAsString());
+    }
+
+    /*
+     * Gson keeps numbers as their literal text, which tells integers from floats the same way a JSON parser does
+     * */
+    private static Value toNumberValue(final String number)
+    {
+        if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+            return ValueFactory.newFloat(Double.parseDouble(number));
+        }
+        try {
+            return ValueFactory.newInteger(Long.parseLong(number));
+        }
+        catch (final NumberFormatException e) {
+            return ValueFactory.newInteger(new BigInteger(number));
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package org.embulk.input.jira.util;
+
+import com.google.gson.JsonElement;
+import org.embulk.config.ConfigSource;
+import org.embulk.input.jira.Issue;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
+import org.embulk.util.config.units.ColumnConfig;
+import org.embulk.util.timestamp.TimestampFormatter;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.embulk.input.jira.Constant.DEFAULT_TIMESTAMP_PATTERN;
+
+/*
+ * The schema compiled once per task: each column has its path already split
+ * and a writer specialized for its type, so adding a record only walks the issue
+ * */
+public final class RecordPlan
+{
+    private final ColumnWriter[] writers;
+
+    public RecordPlan(final Schema schema, final PluginTask task)
+    {
+        final List<Column> columns = schema.getColumns();
+        writers = new ColumnWriter[columns.size()];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = createWriter(columns.get(i), task);
+        }
+    }
+
+    public void addRecord(final Issue issue, final PageBuilder pageBuilder)
+    {
+        for (final ColumnWriter writer : writers) {
+            writer.write(issue, pageBuilder);
+        }
+        pageBuilder.addRecord();
+    }
+
+    private static ColumnWriter createWriter(final Column column, final PluginTask task)
+    {
+        final String[] path = column.getName().split("\\.");
+        final ColumnWriter[] writer = new ColumnWriter[1];
+        column.visit(new ColumnVisitor() {
+            @Override
+            public void jsonColumn(final Column column)
+            {
+                writer[0] = new JsonColumnWriter(column, path);
+            }
+
+            @Override
+            public void stringColumn(final Column column)
+            {
+                writer[0] = new StringColumnWriter(column, path);
+            }
+
+            @Override
+            public void timestampColumn(final Column column)
+            {
+                writer[0] = new TimestampColumnWriter(column, path, task);
+            }
+
+            @Override
+            public void booleanColumn(final Column column)
+            {
+                writer[0] = new BooleanColumnWriter(column, path);
+            }
+
+            @Override
+            public void longColumn(final Column column)
+            {
+                writer[0] = new LongColumnWriter(column, path);
+            }
+
+            @Override
+            public void doubleColumn(final Column column)
+            {
+                writer[0] = new DoubleColumnWriter(column, path);
+            }
+        });
+        return writer[0];
+    }
+
+    private abstract static class ColumnWriter
+    {
+        protected final Column column;
+        private final String[] path;
+
+        ColumnWriter(final Column column, final String[] path)
+        {
+            this.column = column;
+            this.path = path;
+        }
+
+        protected JsonElement getValue(final Issue issue)
+        {
+            return issue.getValue(path);
+        }
+
+        abstract void write(Issue issue, PageBuilder pageBuilder);
+    }
+
+    private static final class JsonColumnWriter extends ColumnWriter
+    {
+        JsonColumnWriter(final Column column, final String[] path)
+        {
+            super(column, path);
+        }
+
+        @Override
+        void write(final Issue issue, final PageBuilder pageBuilder)
+        {
+            final JsonElement data = getValue(issue);
+            if (data.isJsonNull() || data.isJsonPrimitive()) {
+                pageBuilder.setNull(column);
+            }
+            else {
+                pageBuilder.setJson(column, JsonValueConverter.toValue(data));
+            }
+        }
+    }
+
+    private static final class StringColumnWriter extends ColumnWriter
+    {
+        StringColumnWriter(final Column column, final String[] path)
+        {
+            super(column, path);
+        }
+
+        @Override
+        void write(final Issue issue, final PageBuilder pageBuilder)
+        {
+            final JsonElement data = getValue(issue);
+            if (data.isJsonNull()) {
+                pageBuilder.setNull(column);
+            }
+            else if (data.isJsonPrimitive()) {
+                pageBuilder.setString(column, data.getAsString());
+            }
+            else if (data.isJsonArray()) {
+                pageBuilder.setString(column, StreamSupport.stream(data.getAsJsonArray().spliterator(), false)
+                        .map(obj -> {
+                            if (obj.isJsonPrimitive()) {
+                                return obj.getAsString();
+                            }
+                            return obj.toString();
+                        })
+                        .collect(Collectors.joining(",")));
+            }
+            else {
+                pageBuilder.setString(column, data.toString());
+            }
+        }
+    }
+
+    private static final class TimestampColumnWriter extends ColumnWriter
+    {
+        private final TimestampFormatter formatter;
+        // Jira always answers in the same ISO-8601 layout, which java.time parses without the generic formatter
+        private final boolean jiraTimestamp;
+
+        TimestampColumnWriter(final Column column, final String[] path, final PluginTask task)
+        {
+            super(column, path);
+            final String pattern = getTimestampPattern(task, column);
+            this.formatter = TimestampFormatter
+                    .builder(pattern, true)
+                    .setDefaultZoneFromString("UTC")
+                    .build();
+            this.jiraTimestamp = DEFAULT_TIMESTAMP_PATTERN.equals(pattern);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation") // TODO: For compatibility with Embulk v0.9
+        void write(final Issue issue, final PageBuilder pageBuilder)
+        {
+            final JsonElement data = getValue(issue);
+            if (data.isJsonNull() || data.isJsonObject() || data.isJsonArray()) {
+                pageBuilder.setNull(column);
+            }
+            else {
+                final Instant value = getTimestampValue(data.getAsString());
+                if (value == null) {
+                    pageBuilder.setNull(column);
+                }
+                else {
+                    // TODO: Use Instant instead of Timestamp
+                    pageBuilder.setTimestamp(column, org.embulk.spi.time.Timestamp.ofInstant(value));
+                }
+            }
+        }
+
+        /*
+         * For getting the timestamp value of the node
+         * Sometime if the parser could not parse the value then return null
+         * */
+        private Instant getTimestampValue(final String value)
+        {
+            if (jiraTimestamp) {
+                final OffsetDateTime dateTime = JiraUtil.parseJiraTimestamp(value);
+                if (dateTime != null) {
+                    return dateTime.toInstant();
+                }
+            }
+            try {
+                return formatter.parse(value);
+            }
+            catch (final Exception e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class BooleanColumnWriter extends ColumnWriter
+    {
+        BooleanColumnWriter(final Column column, final String[] path)
+        {
+            super(column, path);
+        }
+
+        @Override
+        void write(final Issue issue, final PageBuilder pageBuilder)
+        {
+            final Boolean value = getBooleanValue(getValue(issue));
+            if (value == null) {
+                pageBuilder.setNull(column);
+            }
+            else {
+                pageBuilder.setBoolean(column, value);
+            }
+        }
+    }
+
+    private static final class LongColumnWriter extends ColumnWriter
+    {
+        LongColumnWriter(final Column column, final String[] path)
+        {
+            super(column, path);
+        }
+
+        @Override
+        void write(final Issue issue, final PageBuilder pageBuilder)
+        {
+            final Long value = getLongValue(getValue(issue));
+            if (value == null) {
+                pageBuilder.setNull(column);
+            }
+            else {
+                pageBuilder.setLong(column, value);
+            }
+        }
+    }
+
+    private static final class DoubleColumnWriter extends ColumnWriter
+    {
+        DoubleColumnWriter(final Column column, final String[] path)
+        {
+            super(column, path);
+        }
+
+        @Override
+        void write(final Issue issue, final PageBuilder pageBuilder)
+        {
+            final Double value = getDoubleValue(getValue(issue));
+            if (value == null) {
+                pageBuilder.setNull(column);
+            }
+            else {
+                pageBuilder.setDouble(column, value);
+            }
+        }
+    }
+
+    private static String getTimestampPattern(final PluginTask task, final Column column)
+    {
+        for (final ColumnConfig columnConfig : task.getColumns().getColumns()) {
+            final ConfigSource columnConfigSource = columnConfig.getConfigSource();
+            if (columnConfig.getName().equals(column.getName())
+                    && columnConfigSource != null
+                    && columnConfigSource.has("format")) {
+                return columnConfigSource.get(String.class, "format");
+            }
+        }
+        return DEFAULT_TIMESTAMP_PATTERN;
+    }
+
+    /*
+     * For getting the Long value of the node
+     * Sometime if error occurs (i.e a JSON value but user modified it as long) then return null
+     * */
+    private static Long getLongValue(final JsonElement value)
+    {
+        try {
+            return value.getAsLong();
+        }
+        catch (final Exception e) {
+            return null;
+        }
+    }
+
+    /*
+     * For getting the Double value of the node
+     * Sometime if error occurs (i.e a JSON value but user modified it as double) then return null
+     * */
+    private static Double getDoubleValue(final JsonElement value)
+    {
+        try {
+            return value.getAsDouble();
+        }
+        catch (final Exception e) {
+            return null;
+        }
+    }
+
+    /*
+     * For getting the Boolean value of the node
+     * Sometime if error occurs (i.e a JSON value but user modified it as boolean) then return null
+     * */
+    private static Boolean getBooleanValue(final JsonElement value)
+    {
+        try {
+            return value.getAsBoolean();
+        }
+        catch (final Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.embulk.input.jira.util;
+
+import org.embulk.config.DataSource;
+import org.embulk.config.TaskReport;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Where the time of a task goes, updated from the threads fetching pages and subresources and the one building records.
+ * Returned in the task report under "metrics" and aggregated over the tasks at the end of the transaction
+ * */
+public final class TaskMetrics
+{
+    // HTTP latencies are counted in buckets growing by 5%, up to about 19 hours
+    private static final int LATENCY_BUCKETS = 512;
+    private static final double LATENCY_BUCKET_GROWTH = Math.log(1.05);
+
+    // Keys of the report which are added up over the tasks
+    private static final List<String> SUMMED_KEYS = Arrays.asList("pages", "cache_hits", "issues", "records", "requests", "bytes_received",
+            "wire_bytes_received", "http_latency_total_ms", "api_wait_ms", "parse_ms", "record_building_ms");
+
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong issues = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong wireBytesReceived = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong recordBuildingNanos = new AtomicLong();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS);
+    // By HTTP status code, -1 being an I/O error
+    private final Map<Integer, AtomicLong> retries = new ConcurrentSkipListMap<>();
+
+    public void addPage()
+    {
+        pages.incrementAndGet();
+    }
+
+    /*
+     * A page served from cache_directory instead of JIRA
+     * */
+    public void addCacheHit()
+    {
+        cacheHits.incrementAndGet();
+    }
+
+    public void addIssue(final long recordCount)
+    {
+        issues.incrementAndGet();
+        records.addAndGet(recordCount);
+    }
+
+    /*
+     * Response bytes after decoding the Content-Encoding
+     * */
+    public void addBytesReceived(final long bytes)
+    {
+        bytesReceived.addAndGet(bytes);
+    }
+
+    /*
+     * Response bytes as transferred, compressed when JIRA compressed them
+     * */
+    public void addWireBytesReceived(final long bytes)
+    {
+        wireBytesReceived.addAndGet(bytes);
+    }
+
+    /*
+     * A request answered by JIRA, the latency being the time until the response headers are received
+     * */
+    public void addRequest(final long nanos)
+    {
+        requests.incrementAndGet();
+        latencyNanos.addAndGet(nanos);
+        waitNanos.addAndGet(nanos);
+        latencyBuckets.incrementAndGet(toBucket(nanos));
+    }
+
+    /*
+     * Time spent before sending a request, held back by the rate limit or a retry
+     * */
+    public void addWait(final long nanos)
+    {
+        waitNanos.addAndGet(nanos);
+    }
+
+    public void addParse(final long nanos)
+    {
+        parseNanos.addAndGet(nanos);
+    }
+
+    public void addRecordBuilding(final long nanos)
+    {
+        recordBuildingNanos.addAndGet(nanos);
+    }
+
+    public void addRetry(final int statusCode)
+    {
+        retries.computeIfAbsent(statusCode, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    public long getPages()
+    {
+        return pages.get();
+    }
+
+    public long getCacheHits()
+    {
+        return cacheHits.get();
+    }
+
+    public long getIssues()
+    {
+        return issues.get();
+    }
+
+    public long getRecords()
+    {
+        return records.get();
+    }
+
+    public long getRequests()
+    {
+        return requests.get();
+    }
+
+    public long getBytesReceived()
+    {
+        return bytesReceived.get();
+    }
+
+    public long getWireBytesReceived()
+    {
+        return wireBytesReceived.get();
+    }
+
+    public long getRetries(final int statusCode)
+    {
+        final AtomicLong count = retries.get(statusCode);
+        return count == null ? 0 : count.get();
+    }
+
+    /*
+     * The upper bound of the bucket holding the given quantile of the latencies
+     * */
+    public long getLatencyPercentileMillis(final double quantile)
+    {
+        final long count = requests.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += latencyBuckets.get(i);
+            if (seen >= rank) {
+                return TimeUnit.NANOSECONDS.toMillis(fromBucket(i));
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(fromBucket(LATENCY_BUCKETS - 1));
+    }
+
+    public TaskReport toTaskReport(final TaskReport taskReport)
+    {
+        taskReport.set("pages", pages.get());
+        taskReport.set("cache_hits", cacheHits.get());
+        taskReport.set("issues", issues.get());
+        taskReport.set("records", records.get());
+        taskReport.set("requests", requests.get());
+        taskReport.set("bytes_received", bytesReceived.get());
+        taskReport.set("wire_bytes_received", wireBytesReceived.get());
+        taskReport.set("http_latency_total_ms", TimeUnit.NANOSECONDS.toMillis(latencyNanos.get()));
+        taskReport.set("http_latency_mean_ms", requests.get() == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(latencyNanos.get() / requests.get()));
+        taskReport.set("http_latency_p99_ms", getLatencyPercentileMillis(0.99));
+        taskReport.set("api_wait_ms", TimeUnit.NANOSECONDS.toMillis(waitNanos.get()));
+        taskReport.set("parse_ms", TimeUnit.NANOSECONDS.toMillis(parseNanos.get()));
+        taskReport.set("record_building_ms", TimeUnit.NANOSECONDS.toMillis(recordBuildingNanos.get()));
+        final Map<String, Long> retryCounts = new TreeMap<>();
+        retries.forEach((statusCode, count) -> retryCounts.put(String.valueOf(statusCode), count.get()));
+        taskReport.set("retries", retryCounts);
+        return taskReport;
+    }
+
+    /*
+     * Add up the metrics of the tasks. The p99 latency of the transaction is the largest p99 of its tasks
+     * */
+    public static TaskReport aggregate(final List<? extends DataSource> taskMetrics, final TaskReport aggregated)
+    {
+        long p99 = 0;
+        final Map<String, Long> retryCounts = new TreeMap<>();
+        for (final String key : SUMMED_KEYS) {
+            aggregated.set(key, 0L);
+        }
+        for (final DataSource metrics : taskMetrics) {
+            for (final String key : SUMMED_KEYS) {
+                aggregated.set(key, aggregated.get(Long.class, key) + metrics.get(Long.class, key, 0L));
+            }
+            p99 = Math.max(p99, metrics.get(Long.class, "http_latency_p99_ms", 0L));
+            if (metrics.has("retries")) {
+                final DataSource retries = metrics.getNested("retries");
+                for (final String statusCode : retries.getAttributeNames()) {
+                    retryCounts.merge(statusCode, retries.get(Long.class, statusCode), Long::sum);
+                }
+            }
+        }
+        final long requests = aggregated.get(Long.class, "requests");
+        aggregated.set("http_latency_mean_ms", requests == 0 ? 0 : aggregated.get(Long.class, "http_latency_total_ms") / requests);
+        aggregated.set("http_latency_p99_ms", p99);
+        aggregated.set("retries", retryCounts);
+        return aggregated;
+    }
+
+    public static String describe(final DataSource metrics)
+    {
+        return String.format("%d pages (%d from the cache), %d issues, %d records, %d requests, %d bytes received (%d on the wire), "
+                        + "HTTP latency total %d ms / mean %d ms / p99 %d ms, retries %s, "
+                        + "waiting on JIRA %d ms, parsing %d ms, building records %d ms",
+                metrics.get(Long.class, "pages", 0L), metrics.get(Long.class, "cache_hits", 0L), metrics.get(Long.class, "issues", 0L), metrics.get(Long.class, "records", 0L),
+                metrics.get(Long.class, "requests", 0L), metrics.get(Long.class, "bytes_received", 0L),
+                metrics.get(Long.class, "wire_bytes_received", 0L),
+                metrics.get(Long.class, "http_latency_total_ms", 0L), metrics.get(Long.class, "http_latency_mean_ms", 0L),
+                metrics.get(Long.class, "http_latency_p99_ms", 0L),
+                describeRetries(metrics),
+                metrics.get(Long.class, "api_wait_ms", 0L), metrics.get(Long.class, "parse_ms", 0L),
+                metrics.get(Long.class, "record_building_ms", 0L));
+    }
+
+    private static String describeRetries(final DataSource metrics)
+    {
+        if (!metrics.has("retries")) {
+            return "none";
+        }
+        final DataSource retries = metrics.getNested("retries");
+        final StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (final String statusCode : retries.getAttributeNames()) {
+            joiner.add(statusCode + ": " + retries.get(Long.class, statusCode));
+        }
+        return joiner.toString();
+    }
+
+    private static int toBucket(final long nanos)
+    {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        if (micros <= 1) {
+            return 0;
+        }
+        return (int) Math.min(LATENCY_BUCKETS - 1, Math.ceil(Math.log(micros) / LATENCY_BUCKET_GROWTH));
+    }
+
+    private static long fromBucket(final int bucket)
+    {
+        return TimeUnit.MICROSECONDS.toNanos((long) Math.ceil(Math.exp(bucket * LATENCY_BUCKET_GROWTH)));
+    }
+}
@@ -0,0 +1,111 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.util.guess.SchemaGuess;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER_FACTORY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class GuessSampleTest
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void test_shape()
+    {
+        assertEquals(GuessSample.shape(new JsonPrimitive("2019-01-02T03:04:05.000+0000")),
+                GuessSample.shape(new JsonPrimitive("2020-11-12T13:14:15.123+0900")));
+        assertEquals(GuessSample.shape(new JsonPrimitive("Synthetic issue 1")), GuessSample.shape(new JsonPrimitive("Something wrong 42")));
+        assertEquals(GuessSample.shape(new JsonPrimitive(12)), GuessSample.shape(new JsonPrimitive("345")));
+        assertNotEquals(GuessSample.shape(new JsonPrimitive(12)), GuessSample.shape(new JsonPrimitive(1.5)));
+        assertNotEquals(GuessSample.shape(new JsonPrimitive(true)), GuessSample.shape(new JsonPrimitive("Bug")));
+        assertNotEquals(GuessSample.shape(new JsonParser().parse("{}")), GuessSample.shape(new JsonParser().parse("[]")));
+        assertEquals("null", GuessSample.shape(JsonNull.INSTANCE));
+    }
+
+    @Test
+    public void test_toRecords_sparseColumns()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config(), PluginTask.class);
+        GuessSample sample = new GuessSample(task);
+        for (int i = 1; i <= 100; i++) {
+            sample.accept(createIssue("{\"key\":\"TEST-" + i + "\",\"fields\":{\"votes\":" + i + "}}"));
+        }
+        sample.accept(createIssue("{\"key\":\"TEST-101\",\"fields\":{\"votes\":1.5,\"customfield_10000\":\"2019-01-02T03:04:05.000+0000\"}}"));
+
+        assertEquals(101, sample.getIssues());
+        assertEquals(3, sample.getColumnCount());
+        List<LinkedHashMap<String, Object>> records = sample.toRecords();
+        assertEquals(9, records.size());
+        assertEquals(Arrays.asList("fields.customfield_10000", "fields.votes", "key"), Arrays.asList(records.get(0).keySet().toArray()));
+        assertEquals("2019-01-02T03:04:05.000+0000", records.get(0).get("fields.customfield_10000"));
+        assertEquals(JsonNull.INSTANCE, records.get(1).get("fields.customfield_10000"));
+        Set<Object> votes = new HashSet<>();
+        records.forEach(record -> votes.add(record.get("fields.votes")));
+        assertEquals(new HashSet<>(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "1.5")), votes);
+        assertEquals("TEST-1", records.get(0).get("key"));
+        assertNull(records.get(0).get("summary"));
+    }
+
+    @Test
+    public void test_toRecords_severalValuesPerShape()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config(), PluginTask.class);
+        GuessSample sample = new GuessSample(task);
+        for (String created : Arrays.asList("2019-01-02T03:04:05.000+0000", "2019-01-03T03:04:05.000+0000",
+                "2019-13-45T03:04:05.000+0000", "2019-01-04T03:04:05.000+0000")) {
+            sample.accept(createIssue("{\"fields\":{\"created\":\"" + created + "\"}}"));
+        }
+
+        List<LinkedHashMap<String, Object>> records = sample.toRecords();
+        assertEquals(4, records.size());
+        assertEquals("2019-13-45T03:04:05.000+0000", records.get(2).get("fields.created"));
+        assertEquals("string", guessType(records, "fields.created"));
+        // The first value of the shape alone would have been guessed as a timestamp
+        assertEquals("timestamp", guessType(records.subList(0, 1), "fields.created"));
+    }
+
+    @Test
+    public void test_toRecords_changelogItems()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config().set("record_mode", "changelog_items"), PluginTask.class);
+        GuessSample sample = new GuessSample(task);
+        sample.accept(createIssue("{\"id\":\"1\",\"key\":\"TEST-1\",\"changelog\":{\"histories\":[{\"id\":\"10\",\"created\":\"2019-01-02T03:04:05.000+0000\","
+                + "\"items\":[{\"field\":\"status\",\"fromString\":\"Open\",\"toString\":\"Done\"},{\"field\":\"assignee\"}]}]}}"));
+        sample.accept(createIssue("{\"id\":\"2\",\"key\":\"TEST-2\",\"changelog\":{\"histories\":[]}}"));
+
+        assertEquals(2, sample.getIssues());
+        assertEquals(2, sample.getRows());
+        assertEquals(12, sample.getColumnCount());
+    }
+
+    private static String guessType(List<LinkedHashMap<String, Object>> records, String name)
+    {
+        return SchemaGuess.of(CONFIG_MAPPER_FACTORY).fromLinkedHashMapRecords(records).stream()
+                .filter(column -> name.equals(column.get(String.class, "name")))
+                .findFirst()
+                .map(column -> column.get(String.class, "type"))
+                .orElse(null);
+    }
+
+    private static Issue createIssue(final String json)
+    {
+        return new Issue(new JsonParser().parse(json).getAsJsonObject());
+    }
+}
@@ -0,0 +1,87 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonObject;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.client.JiraClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IssueBulkFetcherTest
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final JiraClient jiraClient = Mockito.mock(JiraClient.class);
+
+    @Test
+    public void test_loadIssueIdsOrKeys() throws IOException
+    {
+        File file = folder.newFile("issues.txt");
+        Files.write(file.toPath(), Arrays.asList("# flagged by the webhook", "TEST-2", "", " 10003 ", "TEST-1"), StandardCharsets.UTF_8);
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config()
+                .set("issue_keys", Arrays.asList("TEST-1", "TEST-4"))
+                .set("issue_ids_file", file.getAbsolutePath()), PluginTask.class);
+
+        assertTrue(IssueBulkFetcher.isEnabled(task));
+        assertEquals(Arrays.asList("TEST-1", "TEST-4", "TEST-2", "10003"), IssueBulkFetcher.loadIssueIdsOrKeys(task));
+        assertFalse(IssueBulkFetcher.isEnabled(CONFIG_MAPPER.map(TestHelpers.config(), PluginTask.class)));
+    }
+
+    @Test
+    public void test_fetchAll_batchesInOrder()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config()
+                .set("issue_keys", Arrays.asList("TEST-1"))
+                .set("bulk_fetch_threads", 2), PluginTask.class);
+        List<String> fields = Arrays.asList("summary");
+        when(jiraClient.fetchIssues(Mockito.eq(task), Mockito.anyList(), Mockito.eq(fields))).thenAnswer(invocation -> {
+            List<String> batch = invocation.getArgument(1);
+            return batch.stream().map(IssueBulkFetcherTest::createIssue).collect(Collectors.toList());
+        });
+        List<String> keys = new ArrayList<>();
+        for (int i = 1; i <= 250; i++) {
+            keys.add("TEST-" + i);
+        }
+        List<Issue> issues = new ArrayList<>();
+
+        try (IssueBulkFetcher bulkFetcher = new IssueBulkFetcher(jiraClient, task, fields)) {
+            bulkFetcher.fetchAll(keys, issues::add);
+        }
+
+        assertEquals(250, issues.size());
+        for (int i = 0; i < issues.size(); i++) {
+            assertEquals(keys.get(i), issues.get(i).getValue("key").getAsString());
+        }
+        verify(jiraClient, times(3)).fetchIssues(Mockito.eq(task), Mockito.anyList(), Mockito.eq(fields));
+    }
+
+    private static Issue createIssue(final String key)
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("key", key);
+        return new Issue(json);
+    }
+}
@@ -0,0 +1,97 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.client.JiraClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IssueEnricherTest
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private final JiraClient jiraClient = Mockito.mock(JiraClient.class);
+
+    @Test
+    public void test_accept_fetchTruncatedChangelogInOrder()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config()
+                .set("fetch_full_changelog", true)
+                .set("max_results", 2), PluginTask.class);
+        JsonArray histories = new JsonParser().parse("[{\"id\":\"1\"},{\"id\":\"2\"},{\"id\":\"3\"}]").getAsJsonArray();
+        when(jiraClient.getChangelogHistories(task, "TEST-1")).thenReturn(histories);
+        List<Issue> issues = new ArrayList<>();
+
+        try (IssueEnricher issueEnricher = new IssueEnricher(jiraClient, task, issues::add)) {
+            issueEnricher.accept(createIssue("TEST-1", "{\"total\":3,\"histories\":[{\"id\":\"1\"}]}"));
+            issueEnricher.accept(createIssue("TEST-2", "{\"total\":0,\"histories\":[]}"));
+            issueEnricher.accept(createIssue("TEST-3", "{\"total\":1,\"histories\":[{\"id\":\"4\"}]}"));
+            issueEnricher.accept(createIssue("TEST-4", null));
+            issueEnricher.flush();
+        }
+
+        assertEquals(4, issues.size());
+        for (int i = 0; i < issues.size(); i++) {
+            assertEquals("TEST-" + (i + 1), issues.get(i).getValue("key").getAsString());
+        }
+        assertEquals(histories, issues.get(0).getValue("changelog.histories"));
+        assertEquals(3, issues.get(0).getValue("changelog.total").getAsInt());
+        assertEquals(1, issues.get(2).getValue("changelog.histories").getAsJsonArray().size());
+        verify(jiraClient, times(1)).getChangelogHistories(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void test_accept_fetchTruncatedSubresources()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config()
+                .set("fetch_subresources", Arrays.asList("comments", "worklogs")), PluginTask.class);
+        JsonArray comments = new JsonParser().parse("[{\"id\":\"1\"},{\"id\":\"2\"}]").getAsJsonArray();
+        when(jiraClient.getSubresources(task, Subresource.COMMENTS, "TEST-1")).thenReturn(comments);
+        List<Issue> issues = new ArrayList<>();
+
+        try (IssueEnricher issueEnricher = new IssueEnricher(jiraClient, task, issues::add)) {
+            issueEnricher.accept(new Issue(new JsonParser().parse("{\"key\":\"TEST-1\","
+                    + "\"comment\":{\"total\":2,\"comments\":[{\"id\":\"1\"}]},"
+                    + "\"worklog\":{\"total\":1,\"worklogs\":[{\"id\":\"3\"}]}}").getAsJsonObject()));
+            issueEnricher.flush();
+        }
+
+        assertEquals(1, issues.size());
+        assertEquals(comments, issues.get(0).getValue("comment.comments"));
+        assertEquals(1, issues.get(0).getValue("worklog.worklogs").getAsJsonArray().size());
+        verify(jiraClient, times(1)).getSubresources(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void test_accept_passThroughWhenDisabled()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config(), PluginTask.class);
+        List<Issue> issues = new ArrayList<>();
+
+        try (IssueEnricher issueEnricher = new IssueEnricher(jiraClient, task, issues::add)) {
+            issueEnricher.accept(createIssue("TEST-1", "{\"total\":3,\"histories\":[{\"id\":\"1\"}]}"));
+            assertEquals(1, issues.size());
+        }
+        verify(jiraClient, times(0)).getChangelogHistories(Mockito.any(), Mockito.any());
+    }
+
+    private static Issue createIssue(String key, String changelog)
+    {
+        String json = changelog == null ? String.format("{\"key\":\"%s\"}", key) : String.format("{\"key\":\"%s\",\"changelog\":%s}", key, changelog);
+        return new Issue(new JsonParser().parse(json).getAsJsonObject());
+    }
+}
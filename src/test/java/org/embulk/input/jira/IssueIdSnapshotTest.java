@@ -0,0 +1,61 @@
+package org.embulk.input.jira;
+
+import com.google.gson.JsonObject;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IssueIdSnapshotTest
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_saveAndCommit()
+    {
+        PluginTask task = createTask();
+        IssueIdSnapshot snapshot = IssueIdSnapshot.of(task);
+        for (long id : new long[] {10003, 10001, 2000000000000L, 10003, 10002}) {
+            snapshot.accept(createIssue(id));
+        }
+        long[] ids = snapshot.getIds();
+        assertArrayEquals(new long[] {10001, 10002, 10003, 2000000000000L}, ids);
+        assertNull(snapshot.loadPrevious());
+
+        snapshot.saveNext(ids);
+        // Not committed yet
+        assertNull(IssueIdSnapshot.of(task).loadPrevious());
+
+        IssueIdSnapshot.commit(task);
+        assertArrayEquals(ids, IssueIdSnapshot.of(task).loadPrevious());
+        assertTrue(new File(folder.getRoot(), "ids.snapshot").exists());
+        assertFalse(new File(folder.getRoot(), "ids.snapshot.next").exists());
+    }
+
+    private PluginTask createTask()
+    {
+        return CONFIG_MAPPER.map(TestHelpers.config()
+                .set("record_mode", "deleted_issues")
+                .set("id_snapshot_file", new File(folder.getRoot(), "ids.snapshot").getAbsolutePath()), PluginTask.class);
+    }
+
+    private static Issue createIssue(final long id)
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", Long.toString(id));
+        return new Issue(json);
+    }
+}
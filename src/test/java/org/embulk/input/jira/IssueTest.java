@@ -275,4 +275,14 @@ public class IssueTest
         JsonElement expected = issueGetExpected.get(testName + "Result");
         assertEquals(expected, issue.getValue(path));
     }
+
+    @Test
+    public void test_getValue_splitPath()
+    {
+        Issue issue = new Issue(issueGet);
+        for (String testName : new String[] {"nestedPrimitive", "nestedArray", "3levelsArraysNull", "allJsonObjectArrayOnly2"}) {
+            String path = issueGetExpected.get(testName).getAsString();
+            assertEquals(issue.getValue(path), issue.getValue(path.split("\\.")));
+        }
+    }
 }
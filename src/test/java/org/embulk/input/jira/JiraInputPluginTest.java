@@ -10,11 +10,13 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
 import org.embulk.input.jira.JiraInputPlugin.PluginTask;
 import org.embulk.input.jira.client.JiraClient;
+import org.embulk.input.jira.util.JiraUtil;
 import org.embulk.spi.InputPlugin;
 import org.embulk.spi.PageBuilder;
 import org.embulk.spi.Schema;
@@ -22,14 +24,20 @@ import org.embulk.spi.TestPageBuilderReader.MockPageOutput;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -40,6 +48,9 @@ public class JiraInputPluginTest
     @Rule
     public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private JiraInputPlugin plugin;
     private JiraClient jiraClient;
     private JsonObject data;
@@ -63,7 +74,7 @@ public class JiraInputPluginTest
             pageBuilder = Mockito.mock(PageBuilder.class);
         }
         when(plugin.getJiraClient()).thenReturn(jiraClient);
-        when(jiraClient.createHttpClient()).thenReturn(client);
+        when(jiraClient.createHttpClient(Mockito.any())).thenReturn(client);
         when(client.execute(Mockito.any(HttpUriRequest.class))).thenReturn(response);
         when(response.getStatusLine()).thenReturn(statusLine);
         doReturn(pageBuilder).when(plugin).getPageBuilder(Mockito.any(), Mockito.any());
@@ -76,15 +87,17 @@ public class JiraInputPluginTest
         final JsonObject searchResponse = data.get("emptyResult").getAsJsonObject();
 
         when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(searchResponse.get("statusCode").getAsInt());
         when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(searchResponse.get("body").toString()));
 
         plugin.transaction(config, new Control());
-        // Check credential 1 + getTotal 1 + loadData 0
-        verify(jiraClient, times(2)).createHttpClient();
+        // Validate endpoint, check credential and load data share a single client
+        verify(jiraClient, times(1)).createHttpClient(Mockito.any());
         verify(pageBuilder, times(0)).addRecord();
         verify(pageBuilder, times(1)).finish();
     }
@@ -110,15 +123,17 @@ public class JiraInputPluginTest
         when(statusLine.getStatusCode())
                 .thenReturn(searchResponse.get("statusCode").getAsInt())
                 .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(searchResponse.get("statusCode").getAsInt());
         when(response.getEntity())
                 .thenReturn(new StringEntity(searchResponse.get("body").toString()))
                 .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(searchResponse.get("body").toString()));
 
         plugin.transaction(TestHelpers.dynamicSchemaConfig(), new Control());
-        // Check credential 1 + loadData 2
-        verify(jiraClient, times(3)).createHttpClient();
+        // One client for guessing the schema in transaction + one client for the task
+        verify(jiraClient, times(2)).createHttpClient(Mockito.any());
         verify(pageBuilder, times(1)).addRecord();
         verify(pageBuilder, times(1)).finish();
     }
@@ -130,15 +145,17 @@ public class JiraInputPluginTest
         final JsonObject searchResponse = data.get("oneRecordResult").getAsJsonObject();
 
         when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(searchResponse.get("statusCode").getAsInt());
         when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(searchResponse.get("body").toString()));
 
         plugin.transaction(config, new Control());
-        // Check credential 1 + loadData 1
-        verify(jiraClient, times(2)).createHttpClient();
+        // Validate endpoint, check credential and load data share a single client
+        verify(jiraClient, times(1)).createHttpClient(Mockito.any());
         verify(pageBuilder, times(1)).addRecord();
         verify(pageBuilder, times(1)).finish();
     }
@@ -151,21 +168,143 @@ public class JiraInputPluginTest
         final JsonObject searchSecondResponse = data.get("2PagesSecondResult").getAsJsonObject();
 
         when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(searchResponse.get("statusCode").getAsInt())
                 .thenReturn(searchSecondResponse.get("statusCode").getAsInt());
         when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(searchResponse.get("body").toString()))
                 .thenReturn(new StringEntity(searchSecondResponse.get("body").toString()));
 
         plugin.transaction(config, new Control());
-        // Check credential 1 + loadData 2
-        verify(jiraClient, times(3)).createHttpClient();
+        // Validate endpoint, check credential and load data share a single client
+        verify(jiraClient, times(1)).createHttpClient(Mockito.any());
+        verify(pageBuilder, times(2)).addRecord();
+        verify(pageBuilder, times(1)).finish();
+    }
+
+    @Test
+    public void test_run_with2PagesResultWithoutPrefetch() throws IOException
+    {
+        final JsonObject authorizeResponse = data.get("authenticateSuccess").getAsJsonObject();
+        final JsonObject searchResponse = data.get("2PagesResult").getAsJsonObject();
+        final JsonObject searchSecondResponse = data.get("2PagesSecondResult").getAsJsonObject();
+
+        when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(searchResponse.get("statusCode").getAsInt())
+                .thenReturn(searchSecondResponse.get("statusCode").getAsInt());
+        when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(searchResponse.get("body").toString()))
+                .thenReturn(new StringEntity(searchSecondResponse.get("body").toString()));
+
+        plugin.transaction(TestHelpers.config().set("prefetch_pages", 0), new Control());
         verify(pageBuilder, times(2)).addRecord();
         verify(pageBuilder, times(1)).finish();
     }
 
+    @Test
+    public void test_run_resumeFromCheckpoint() throws IOException
+    {
+        final JsonObject authorizeResponse = data.get("authenticateSuccess").getAsJsonObject();
+        final JsonObject searchSecondResponse = data.get("2PagesSecondResult").getAsJsonObject();
+        final ConfigSource checkpointConfig = TestHelpers.config().set("checkpoint_directory", folder.getRoot().getAbsolutePath());
+        final PluginTask task = CONFIG_MAPPER.map(checkpointConfig, PluginTask.class);
+        final String jql = JiraUtil.buildTaskJql(task, 0);
+        final List<String> fields = JiraUtil.buildRequestFields(task, task.getColumns().toSchema());
+        // The first page was written by the previous attempt
+        TaskCheckpoint.load(task, 0, jql, fields).get().save("aaa", "id1", null);
+
+        when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(searchSecondResponse.get("statusCode").getAsInt());
+        when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(searchSecondResponse.get("body").toString()));
+
+        plugin.transaction(checkpointConfig, new Control());
+        verify(pageBuilder, times(1)).addRecord();
+        verify(pageBuilder, times(1)).finish();
+        final TaskCheckpoint checkpoint = TaskCheckpoint.load(task, 0, jql, fields).get();
+        assertTrue(checkpoint.isCompleted());
+        assertEquals(2, checkpoint.getPages());
+    }
+
+    @Test
+    public void test_run_resumeFromRejectedPageToken() throws IOException
+    {
+        final JsonObject authorizeResponse = data.get("authenticateSuccess").getAsJsonObject();
+        final ConfigSource checkpointConfig = TestHelpers.config()
+                .set("checkpoint_directory", folder.getRoot().getAbsolutePath())
+                .set("prefetch_pages", 0);
+        final PluginTask task = CONFIG_MAPPER.map(checkpointConfig, PluginTask.class);
+        final String jql = JiraUtil.buildTaskJql(task, 0);
+        final List<String> fields = JiraUtil.buildRequestFields(task, task.getColumns().toSchema());
+        TaskCheckpoint.load(task, 0, jql, fields).get().save("expired", "id1", null);
+
+        when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(400);
+        when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity("{\"errorMessages\":[\"The page token is invalid\"]}"));
+
+        final ConfigException exception = assertThrows(ConfigException.class, () -> plugin.transaction(checkpointConfig, new Control()));
+        assertTrue(exception.getMessage().startsWith("Could not resume task 0 from its checkpoint"));
+        assertTrue(exception.getMessage().endsWith("The page token is invalid"));
+        // The first page is never loaded again
+        verify(client, times(3)).execute(Mockito.any(HttpUriRequest.class));
+        verify(pageBuilder, times(0)).addRecord();
+    }
+
+    @Test
+    public void test_run_searchErrorFromPrefetcher() throws IOException
+    {
+        final JsonObject authorizeResponse = data.get("authenticateSuccess").getAsJsonObject();
+
+        when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(400);
+        when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity("{\"errorMessages\":[\"Error in the JQL Query\"]}"));
+
+        final ConfigException exception = assertThrows(ConfigException.class, () -> plugin.transaction(config, new Control()));
+        assertEquals("Error in the JQL Query", exception.getMessage());
+        verify(pageBuilder, times(0)).finish();
+    }
+
+    @Test
+    public void test_run_incremental() throws IOException
+    {
+        final JsonObject authorizeResponse = data.get("authenticateSuccess").getAsJsonObject();
+        final JsonObject searchResponse = data.get("incrementalResult").getAsJsonObject();
+
+        when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
+                .thenReturn(searchResponse.get("statusCode").getAsInt());
+        when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(searchResponse.get("body").toString()));
+
+        final ConfigDiff configDiff = plugin.transaction(TestHelpers.config().set("incremental", true), new Control());
+        verify(pageBuilder, times(2)).addRecord();
+        assertEquals("2019-01-02T01:30:00.000+0000", configDiff.get(String.class, "last_updated"));
+    }
+
     @Test
     public void test_preview_withEmptyResult() throws IOException
     {
@@ -174,14 +313,15 @@ public class JiraInputPluginTest
         final JsonObject searchResponse = data.get("emptyResult").getAsJsonObject();
 
         when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(searchResponse.get("statusCode").getAsInt());
         when(response.getEntity())
                 .thenReturn(new StringEntity(searchResponse.get("body").toString()));
 
         plugin.transaction(config, new Control());
-        // Check credential 1 + loadData 1
-        verify(jiraClient, times(2)).createHttpClient();
+        // Validate endpoint, check credential and load data share a single client
+        verify(jiraClient, times(1)).createHttpClient(Mockito.any());
         verify(pageBuilder, times(0)).addRecord();
         verify(pageBuilder, times(1)).finish();
     }
@@ -194,19 +334,85 @@ public class JiraInputPluginTest
         final JsonObject searchResponse = data.get("oneRecordResult").getAsJsonObject();
 
         when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(searchResponse.get("statusCode").getAsInt());
         when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
                 .thenReturn(new StringEntity(searchResponse.get("body").toString()));
 
         plugin.transaction(config, new Control());
-        // Check credential 1 + loadData 1
-        verify(jiraClient, times(2)).createHttpClient();
+        // Validate endpoint, check credential and load data share a single client
+        verify(jiraClient, times(1)).createHttpClient(Mockito.any());
         verify(pageBuilder, times(1)).addRecord();
         verify(pageBuilder, times(1)).finish();
     }
 
+    @Test
+    public void test_preview_deletedIssues() throws IOException
+    {
+        when(plugin.isPreview()).thenReturn(true);
+        final File snapshotFile = new File(folder.getRoot(), "ids.snapshot");
+        final ConfigSource deletedConfig = TestHelpers.config()
+                .set("record_mode", "deleted_issues")
+                .set("id_snapshot_file", snapshotFile.getAbsolutePath());
+        final PluginTask task = CONFIG_MAPPER.map(deletedConfig, PluginTask.class);
+        IssueIdSnapshot.of(task).saveNext(new long[] {1, 2, 3, 4, 100});
+        IssueIdSnapshot.commit(task);
+        final JsonObject authorizeResponse = data.get("authenticateSuccess").getAsJsonObject();
+        // The first page of ids, in ascending order
+        final String searchBody = "{\"issues\":[{\"id\":\"2\"},{\"id\":\"4\"}],\"nextPageToken\":\"next\"}";
+
+        when(statusLine.getStatusCode()).thenReturn(authorizeResponse.get("statusCode").getAsInt());
+        when(response.getEntity())
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(authorizeResponse.get("body").toString()))
+                .thenReturn(new StringEntity(searchBody));
+
+        plugin.transaction(deletedConfig, new Control());
+        // 1 and 3 are gone, 100 is on the following pages which are not read
+        verify(client, times(3)).execute(Mockito.any(HttpUriRequest.class));
+        verify(pageBuilder, times(2)).addRecord();
+        assertArrayEquals(new long[] {1, 2, 3, 4, 100}, IssueIdSnapshot.of(task).loadPrevious());
+        assertFalse(new File(folder.getRoot(), "ids.snapshot.next").exists());
+    }
+
+    @Test
+    public void test_run_maxConnectionsPerRouteIs0()
+    {
+        final ConfigException exception = assertThrows(ConfigException.class,
+                () -> plugin.transaction(TestHelpers.config().set("max_connections_per_route", 0), new Control()));
+        assertEquals("Max connections per route should be equal or greater than 1", exception.getMessage());
+        verify(jiraClient, times(0)).createHttpClient(Mockito.any());
+    }
+
+    @Test
+    public void test_transaction_invalidConfigBeforePartitions() throws IOException
+    {
+        final ConfigException exception = assertThrows(ConfigException.class,
+                () -> plugin.transaction(TestHelpers.config()
+                        .set("search_chains", 2)
+                        .set("checkpoint_directory", folder.getRoot().getAbsolutePath())
+                        .set("partition_by", "created")
+                        .set("balance_partitions", true)
+                        .set("partition_created_from", "2019-01-01")
+                        .set("partition_created_to", "2020-01-01"), new Control()));
+        assertEquals("checkpoint_directory could not be used when search_chains is greater than 1", exception.getMessage());
+        verify(client, times(0)).execute(Mockito.any(HttpUriRequest.class));
+        // No partition plan is saved for the next attempt
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void test_guess_maxConnectionsPerRouteIs0()
+    {
+        final ConfigException exception = assertThrows(ConfigException.class,
+                () -> plugin.guess(TestHelpers.config().set("max_connections_per_route", 0)));
+        assertEquals("Max connections per route should be equal or greater than 1", exception.getMessage());
+        verify(jiraClient, times(0)).createHttpClient(Mockito.any());
+    }
+
     @Test
     public void test_guess() throws IOException
     {
@@ -216,6 +422,7 @@ public class JiraInputPluginTest
         final JsonObject searchResponse = data.get("guessDataResult").getAsJsonObject();
 
         when(statusLine.getStatusCode())
+                .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(authorizeResponse.get("statusCode").getAsInt())
                 .thenReturn(searchResponse.get("statusCode").getAsInt());
         when(response.getEntity())
@@ -0,0 +1,163 @@
+package org.embulk.input.jira;
+
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigException;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class TaskCheckpointTest
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String JQL = "project = TEST";
+    private static final List<String> FIELDS = Arrays.asList("summary", "updated");
+
+    @Test
+    public void test_load_withoutCheckpointDirectory()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config(), PluginTask.class);
+        assertFalse(TaskCheckpoint.load(task, 0, JQL, FIELDS).isPresent());
+    }
+
+    @Test
+    public void test_saveAndLoad() throws IOException
+    {
+        PluginTask task = createTask();
+        TaskCheckpoint checkpoint = TaskCheckpoint.load(task, 0, JQL, FIELDS).get();
+        assertFalse(checkpoint.isResumed());
+
+        checkpoint.save("aaa", "10001", "2019-01-01T00:00:00.000+0000");
+        checkpoint.save("bbb", "10002", "2019-01-02T00:00:00.000+0000");
+
+        TaskCheckpoint loaded = TaskCheckpoint.load(task, 0, JQL, FIELDS).get();
+        assertTrue(loaded.isResumed());
+        assertFalse(loaded.isCompleted());
+        assertEquals("bbb", loaded.getNextPageToken());
+        assertEquals(2, loaded.getPages());
+        assertEquals("10002", loaded.getLastIssueId());
+        assertEquals("2019-01-02T00:00:00.000+0000", loaded.getLastUpdated());
+
+        loaded.save(null, "10003", null);
+        TaskCheckpoint completed = TaskCheckpoint.load(task, 0, JQL, FIELDS).get();
+        assertTrue(completed.isCompleted());
+        assertNull(completed.getNextPageToken());
+        assertNull(completed.getLastUpdated());
+        // The temporary file is always moved to the checkpoint
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    public void test_load_boundToTaskAndConfiguration()
+    {
+        PluginTask task = createTask();
+        TaskCheckpoint.load(task, 0, JQL, FIELDS).get().save("aaa", "10001", null);
+
+        assertFalse(TaskCheckpoint.load(task, 1, JQL, FIELDS).get().isResumed());
+        assertFalse(TaskCheckpoint.load(task, 0, JQL, Arrays.asList("summary")).get().isResumed());
+        PluginTask otherJqlTask = CONFIG_MAPPER.map(TestHelpers.config()
+                .set("jql", "project = OTHER")
+                .set("checkpoint_directory", folder.getRoot().getAbsolutePath()), PluginTask.class);
+        assertFalse(TaskCheckpoint.load(otherJqlTask, 0, JQL, FIELDS).get().isResumed());
+        assertTrue(TaskCheckpoint.load(task, 0, JQL, FIELDS).get().isResumed());
+    }
+
+    @Test
+    public void test_load_changedTaskJql()
+    {
+        PluginTask task = createTask();
+        TaskCheckpoint.load(task, 0, JQL, FIELDS).get().save("aaa", "10001", null);
+
+        // i.e. the created partition of the task ends now
+        ConfigException exception = assertThrows(ConfigException.class,
+                () -> TaskCheckpoint.load(task, 0, JQL + " AND created < \"2019-01-02 00:00\"", FIELDS));
+        assertTrue(exception.getMessage().contains("Delete it to load the task from the first page"));
+    }
+
+    @Test
+    public void test_load_brokenCheckpoint() throws IOException
+    {
+        PluginTask task = createTask();
+        TaskCheckpoint.load(task, 0, JQL, FIELDS).get().save("aaa", "10001", null);
+        try (Stream<Path> paths = Files.list(folder.getRoot().toPath())) {
+            Files.write(paths.findFirst().get(), "{".getBytes(StandardCharsets.UTF_8));
+        }
+
+        ConfigException exception = assertThrows(ConfigException.class, () -> TaskCheckpoint.load(task, 0, JQL, FIELDS));
+        assertTrue(exception.getMessage().startsWith("Could not read the checkpoint " + folder.getRoot().getAbsolutePath()));
+    }
+
+    @Test
+    public void test_load_invalidLastIssueId() throws IOException
+    {
+        PluginTask task = createTask();
+        TaskCheckpoint.load(task, 0, JQL, FIELDS).get().save("aaa", "10001", null);
+        try (Stream<Path> paths = Files.list(folder.getRoot().toPath())) {
+            Path path = paths.findFirst().get();
+            String json = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            Files.write(path, json.replace("\"10001\"", "\"1000l\"").getBytes(StandardCharsets.UTF_8));
+        }
+
+        ConfigException exception = assertThrows(ConfigException.class, () -> TaskCheckpoint.load(task, 0, JQL, FIELDS));
+        assertTrue(exception.getMessage().contains("has an invalid last_issue_id \"1000l\""));
+        assertTrue(exception.getMessage().contains(folder.getRoot().getAbsolutePath()));
+    }
+
+    @Test
+    public void test_savePartitions()
+    {
+        PluginTask task = createTask();
+        assertFalse(TaskCheckpoint.loadPartitions(task).isPresent());
+
+        List<String> partitions = Arrays.asList("created < \"2019-01-01 00:00\"", "created >= \"2019-01-01 00:00\"");
+        TaskCheckpoint.savePartitions(task, partitions);
+        assertEquals(partitions, TaskCheckpoint.loadPartitions(task).get());
+
+        TaskCheckpoint.deletePartitions(task);
+        assertFalse(TaskCheckpoint.loadPartitions(task).isPresent());
+    }
+
+    @Test
+    public void test_delete() throws IOException
+    {
+        PluginTask task = createTask();
+        TaskCheckpoint.load(task, 0, JQL, FIELDS).get().save("aaa", "10001", null);
+        TaskCheckpoint.delete(task, 0, FIELDS);
+
+        assertFalse(TaskCheckpoint.load(task, 0, JQL, FIELDS).get().isResumed());
+        assertEquals(0, countFiles());
+    }
+
+    private long countFiles() throws IOException
+    {
+        try (Stream<Path> paths = Files.list(folder.getRoot().toPath())) {
+            return paths.count();
+        }
+    }
+
+    private PluginTask createTask()
+    {
+        return CONFIG_MAPPER.map(TestHelpers.config()
+                .set("checkpoint_directory", folder.getRoot().getAbsolutePath()), PluginTask.class);
+    }
+}
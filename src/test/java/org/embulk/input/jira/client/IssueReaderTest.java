@@ -0,0 +1,79 @@
+package org.embulk.input.jira.client;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import org.embulk.input.jira.Issue;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IssueReaderTest
+{
+    @Test
+    public void test_read_mergeFields() throws IOException
+    {
+        List<Issue> issues = read("[{\"expand\":\"names\",\"id\":\"1\",\"key\":\"TEST-1\",\"fields\":{\"summary\":\"First\",\"votes\":{\"votes\":2},\"key\":\"FIELD-1\"}},"
+                + "{\"fields\":{\"summary\":\"Second\",\"labels\":[\"a\",\"b\"],\"flagged\":true,\"points\":1.50},\"id\":\"2\",\"key\":\"TEST-2\"},"
+                + "{\"id\":\"3\",\"key\":\"TEST-3\",\"fields\":null}]");
+
+        assertEquals(3, issues.size());
+        assertEquals(new JsonParser().parse("{\"expand\":\"names\",\"id\":\"1\",\"key\":\"FIELD-1\",\"summary\":\"First\",\"votes\":{\"votes\":2}}"),
+                issues.get(0).toJson());
+        assertEquals(2, issues.get(0).getValue("votes.votes").getAsInt());
+        assertTrue(issues.get(0).getValue("labels").isJsonNull());
+        assertEquals("FIELD-1", issues.get(0).getValue("key").getAsString());
+        assertEquals("TEST-2", issues.get(1).getValue("key").getAsString());
+        assertEquals(new JsonParser().parse("[\"a\",\"b\"]"), issues.get(1).getValue("labels"));
+        assertEquals("1.50", issues.get(1).getValue("points").getAsString());
+        assertTrue(issues.get(1).getValue("flagged").getAsBoolean());
+        assertEquals(new JsonParser().parse("{\"id\":\"3\",\"key\":\"TEST-3\"}"), issues.get(2).toJson());
+    }
+
+    @Test
+    public void test_read_shareRepeatedValues() throws IOException
+    {
+        List<Issue> issues = read("[{\"fields\":{\"status\":{\"name\":\"Open\"}}},{\"fields\":{\"status\":{\"name\":\"Open\"}}}]");
+
+        assertSame(issues.get(0).getValue("status.name"), issues.get(1).getValue("status.name"));
+        JsonObject first = issues.get(0).getValue("status").getAsJsonObject();
+        JsonObject second = issues.get(1).getValue("status").getAsJsonObject();
+        assertSame(first.keySet().iterator().next(), second.keySet().iterator().next());
+    }
+
+    @Test
+    public void test_setValue() throws IOException
+    {
+        List<Issue> issues = read("[{\"key\":\"TEST-1\",\"fields\":{\"comment\":{\"total\":3,\"comments\":[]}}},{\"key\":\"TEST-2\"}]");
+
+        issues.get(1).setValue("comment", new JsonPrimitive("replaced"));
+        issues.get(1).setValue("worklog", new JsonPrimitive("added"));
+
+        assertEquals(3, issues.get(0).getValue("comment.total").getAsInt());
+        assertTrue(issues.get(0).getValue("worklog").isJsonNull());
+        assertEquals("replaced", issues.get(1).getValue("comment").getAsString());
+        assertEquals("added", issues.get(1).getValue("worklog").getAsString());
+    }
+
+    private static List<Issue> read(final String json) throws IOException
+    {
+        List<Issue> issues = new ArrayList<>();
+        IssueReader issueReader = new IssueReader();
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                issues.add(issueReader.read(reader));
+            }
+            reader.endArray();
+        }
+        return issues;
+    }
+}
@@ -1,12 +1,20 @@
 package org.embulk.input.jira.client;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
@@ -14,17 +22,37 @@ import org.embulk.input.jira.Issue;
 import org.embulk.input.jira.JiraInputPlugin.PluginTask;
 import org.embulk.input.jira.TestHelpers;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -33,6 +61,8 @@ public class JiraClientTest
 {
     @Rule
     public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
     private JiraClient jiraClient;
     private PluginTask task;
 
@@ -48,13 +78,21 @@ public class JiraClientTest
             jiraClient = Mockito.spy(new JiraClient());
             response = Mockito.mock(CloseableHttpResponse.class);
             task = CONFIG_MAPPER.map(TestHelpers.config(), PluginTask.class);
+            // Throttled tests must not slow the others down
+            task.setRateLimiterId(UUID.randomUUID().toString());
             data = TestHelpers.getJsonFromFile("jira_client.json");
         }
-        when(jiraClient.createHttpClient()).thenReturn(client);
+        when(jiraClient.createHttpClient(Mockito.any())).thenReturn(client);
         when(client.execute(Mockito.any())).thenReturn(response);
         when(response.getStatusLine()).thenReturn(statusLine);
     }
 
+    @After
+    public void tearDown()
+    {
+        JiraClient.releaseRateLimiter(task);
+    }
+
     @Test
     public void test_checkUserCredentials_success() throws IOException
     {
@@ -69,6 +107,26 @@ public class JiraClientTest
         jiraClient.checkUserCredentials(task);
     }
 
+    @Test
+    public void test_httpClient_reusedAcrossRequests() throws IOException
+    {
+        String dataName =  "credentialSuccess";
+        JsonObject messageResponse = data.get(dataName).getAsJsonObject();
+        int statusCode = messageResponse.get("statusCode").getAsInt();
+        String body = messageResponse.get("body").toString();
+
+        when(statusLine.getStatusCode()).thenReturn(statusCode);
+        when(response.getEntity()).thenReturn(new StringEntity(body));
+
+        jiraClient.checkUserCredentials(task);
+        jiraClient.checkUserCredentials(task);
+        verify(jiraClient, times(1)).createHttpClient(Mockito.any());
+        verify(client, times(0)).close();
+
+        jiraClient.close();
+        verify(client, times(1)).close();
+    }
+
     @Test
     public void test_checkUserCredentials_failOn400() throws IOException
     {
@@ -142,6 +200,145 @@ public class JiraClientTest
         assertEquals(issues.size(), 2);
     }
 
+    @Test
+    public void test_countIssues() throws IOException
+    {
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getEntity()).thenReturn(new StringEntity("{\"count\":1234}"));
+
+        assertEquals(1234, jiraClient.countIssues(task, "project = TEST"));
+        ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(client).execute(request.capture());
+        assertTrue(request.getValue().getURI().toString().endsWith("rest/api/latest/search/approximate-count"));
+        assertEquals("{\"jql\":\"project = TEST\"}", EntityUtils.toString(((HttpEntityEnclosingRequest) request.getValue()).getEntity()));
+    }
+
+    @Test
+    public void test_fetchIssues() throws IOException
+    {
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getEntity()).thenReturn(new StringEntity("{\"expand\":\"schema\",\"issues\":["
+                + "{\"id\":\"10001\",\"key\":\"TEST-1\",\"fields\":{\"summary\":\"summary1\"}},"
+                + "{\"id\":\"10002\",\"key\":\"TEST-2\",\"fields\":{\"summary\":\"summary2\"}}],"
+                + "\"issueErrors\":[{\"errorMessages\":[\"Issue does not exist\"],\"errors\":{}}]}"));
+
+        List<Issue> issues = jiraClient.fetchIssues(task, Arrays.asList("TEST-1", "10002", "TEST-3"), Arrays.asList("summary"));
+
+        assertEquals(2, issues.size());
+        assertEquals("TEST-1", issues.get(0).getValue("key").getAsString());
+        assertEquals("summary2", issues.get(1).getValue("summary").getAsString());
+        ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(client).execute(request.capture());
+        assertTrue(request.getValue().getURI().toString().endsWith("rest/api/latest/issue/bulkfetch"));
+        String body = EntityUtils.toString(((HttpEntityEnclosingRequest) request.getValue()).getEntity());
+        assertTrue(body.contains("\"issueIdsOrKeys\":[\"TEST-1\",\"10002\",\"TEST-3\"]"));
+        assertTrue(body.contains("\"fields\":[\"summary\"]"));
+    }
+
+    @Test
+    public void test_findIssueId() throws IOException
+    {
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getEntity())
+                .thenReturn(new StringEntity("{\"issues\":[{\"id\":\"10099\",\"key\":\"TEST-100\"}],\"nextPageToken\":\"next\"}"))
+                .thenReturn(new StringEntity("{\"issues\":[]}"));
+
+        assertEquals(OptionalLong.of(10099), jiraClient.findIssueId(task, "project = TEST ORDER BY key", true));
+        assertEquals(OptionalLong.empty(), jiraClient.findIssueId(task, "project = TEST", false));
+        ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(client, times(2)).execute(request.capture());
+        String body = EntityUtils.toString(((HttpEntityEnclosingRequest) request.getAllValues().get(0)).getEntity());
+        assertTrue(body.contains("\"jql\":\"project = TEST ORDER BY id DESC\""));
+        assertTrue(body.contains("\"maxResults\":1"));
+        assertTrue(body.contains("\"fields\":[\"id\"]"));
+    }
+
+    @Test
+    public void test_searchIssues_gzipResponse() throws IOException
+    {
+        String body = data.get("searchIssuesSuccess").getAsJsonObject().get("body").toString();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray());
+        entity.setContentEncoding("gzip");
+
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getEntity()).thenReturn(entity);
+
+        Pair<List<Issue>, String> result = jiraClient.searchIssues(task, null, 50);
+        assertEquals(2, result.getLeft().size());
+        assertEquals(body.getBytes(StandardCharsets.UTF_8).length, jiraClient.getMetrics().getBytesReceived());
+        assertEquals(compressed.size(), jiraClient.getMetrics().getWireBytesReceived());
+        ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(client).execute(request.capture());
+        assertEquals("gzip, deflate", request.getValue().getFirstHeader(HttpHeaders.ACCEPT_ENCODING).getValue());
+    }
+
+    @Test
+    public void test_searchIssues_fromCache() throws IOException
+    {
+        JsonObject messageResponse = data.get("searchIssuesSuccess").getAsJsonObject();
+        when(statusLine.getStatusCode()).thenReturn(messageResponse.get("statusCode").getAsInt());
+        when(response.getEntity()).thenReturn(new StringEntity(messageResponse.get("body").toString()));
+        task = CONFIG_MAPPER.map(TestHelpers.config().set("cache_directory", folder.getRoot().getAbsolutePath()), PluginTask.class);
+
+        assertEquals(2, jiraClient.searchIssues(task, null, 50).getLeft().size());
+        Pair<List<Issue>, String> cached = jiraClient.searchIssues(task, null, 50);
+        assertEquals(2, cached.getLeft().size());
+        assertEquals("key1", cached.getLeft().get(0).getValue("key").getAsString());
+        verify(client, times(1)).execute(Mockito.any());
+        assertEquals(1, jiraClient.getMetrics().getCacheHits());
+
+        // Another page size is another request
+        jiraClient.searchIssues(task, null, 10);
+        verify(client, times(2)).execute(Mockito.any());
+    }
+
+    @Test
+    public void test_searchIssues_fromBrokenCache() throws IOException
+    {
+        JsonObject messageResponse = data.get("searchIssuesSuccess").getAsJsonObject();
+        when(statusLine.getStatusCode()).thenReturn(messageResponse.get("statusCode").getAsInt());
+        when(response.getEntity())
+                .thenReturn(new StringEntity(messageResponse.get("body").toString()))
+                .thenReturn(new StringEntity(messageResponse.get("body").toString()));
+        task = CONFIG_MAPPER.map(TestHelpers.config().set("cache_directory", folder.getRoot().getAbsolutePath()), PluginTask.class);
+        jiraClient.searchIssues(task, null, 50);
+        // Valid gzip and JSON, but not a search page
+        File[] pages = folder.getRoot().listFiles((directory, name) -> name.endsWith(".json.gz"));
+        assertEquals(1, pages.length);
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(pages[0])), StandardCharsets.UTF_8)) {
+            writer.write("[]");
+        }
+
+        Pair<List<Issue>, String> result = jiraClient.searchIssues(task, null, 50);
+        assertEquals(2, result.getLeft().size());
+        verify(client, times(2)).execute(Mockito.any());
+        assertEquals(0, jiraClient.getMetrics().getCacheHits());
+    }
+
+    @Test
+    public void test_parseSearchResponse() throws IOException
+    {
+        String body = "{\"isLast\":false,\"issues\":[{\"id\":\"id1\",\"key\":\"key1\",\"fields\":{\"summary\":\"summary1\",\"assignee\":{\"name\":\"name1\"}}},"
+                + "{\"id\":\"id2\",\"key\":\"key2\",\"fields\":{\"summary\":\"summary2\",\"assignee\":null}}],\"nextPageToken\":\"token\"}";
+        List<Issue> issues = new ArrayList<>();
+        String nextPageToken = JiraClient.parseSearchResponse(new StringReader(body), issues::add);
+
+        assertEquals("token", nextPageToken);
+        assertEquals(2, issues.size());
+        assertEquals("key1", issues.get(0).getValue("key").getAsString());
+        assertEquals("summary1", issues.get(0).getValue("summary").getAsString());
+        assertEquals("name1", issues.get(0).getValue("assignee.name").getAsString());
+        assertTrue(issues.get(1).getValue("assignee.name").isJsonNull());
+        assertTrue(issues.get(1).getValue("fields").isJsonNull());
+
+        nextPageToken = JiraClient.parseSearchResponse(new StringReader("{\"issues\":[],\"nextPageToken\":null}"), issues::add);
+        assertNull(nextPageToken);
+    }
+
     @Test
     public void test_searchIssues_failJql() throws IOException
     {
@@ -182,4 +379,106 @@ public class JiraClientTest
         issues = result.getLeft();
         assertEquals(issues.size(), 2);
     }
+
+    @Test
+    public void test_searchIssues_retryAfter429() throws IOException
+    {
+        JsonObject throttledResponse = data.get("credentialFail429").getAsJsonObject();
+        JsonObject messageResponse = data.get("searchIssuesSuccess").getAsJsonObject();
+
+        when(statusLine.getStatusCode())
+                .thenReturn(throttledResponse.get("statusCode").getAsInt())
+                .thenReturn(messageResponse.get("statusCode").getAsInt());
+        when(response.getEntity())
+                .thenReturn(new StringEntity(throttledResponse.get("body").toString()))
+                .thenReturn(new StringEntity(messageResponse.get("body").toString()));
+        when(response.getFirstHeader(HttpHeaders.RETRY_AFTER)).thenReturn(new BasicHeader(HttpHeaders.RETRY_AFTER, "0"));
+
+        Pair<List<Issue>, String> result = jiraClient.searchIssues(task, null, 50);
+        assertEquals(2, result.getLeft().size());
+        verify(client, times(2)).execute(Mockito.any());
+        assertEquals(1, jiraClient.getMetrics().getPages());
+        assertEquals(2, jiraClient.getMetrics().getRequests());
+        assertEquals(1, jiraClient.getMetrics().getRetries(429));
+        assertEquals(throttledResponse.get("body").toString().length() + messageResponse.get("body").toString().length(),
+                jiraClient.getMetrics().getBytesReceived());
+    }
+
+    @Test
+    public void test_searchIssues_retryAfter429WithoutWait() throws IOException
+    {
+        JsonObject throttledResponse = data.get("credentialFail429").getAsJsonObject();
+        JsonObject messageResponse = data.get("searchIssuesSuccess").getAsJsonObject();
+
+        when(statusLine.getStatusCode())
+                .thenReturn(throttledResponse.get("statusCode").getAsInt())
+                .thenReturn(throttledResponse.get("statusCode").getAsInt())
+                .thenReturn(messageResponse.get("statusCode").getAsInt());
+        when(response.getEntity())
+                .thenReturn(new StringEntity(throttledResponse.get("body").toString()))
+                .thenReturn(new StringEntity(throttledResponse.get("body").toString()))
+                .thenReturn(new StringEntity(messageResponse.get("body").toString()));
+        when(response.getFirstHeader(HttpHeaders.RETRY_AFTER)).thenReturn(new BasicHeader(HttpHeaders.RETRY_AFTER, "0"));
+        PluginTask retriedTask = CONFIG_MAPPER.map(TestHelpers.config()
+                .set("initial_retry_interval_millis", 100)
+                .set("requests_per_second", 0), PluginTask.class);
+        retriedTask.setRateLimiterId(UUID.randomUUID().toString());
+
+        try {
+            long started = System.currentTimeMillis();
+            Pair<List<Issue>, String> result = jiraClient.searchIssues(retriedTask, null, 50);
+            // 100 milliseconds, then 200 milliseconds
+            assertTrue(System.currentTimeMillis() - started >= 300);
+            assertEquals(2, result.getLeft().size());
+            verify(client, times(3)).execute(Mockito.any());
+            assertEquals(2, jiraClient.getMetrics().getRetries(429));
+        }
+        finally {
+            JiraClient.releaseRateLimiter(retriedTask);
+        }
+    }
+
+    @Test
+    public void test_searchIssues_retryPageFailingMidway() throws IOException
+    {
+        String body = "{\"issues\":[{\"id\":\"10001\",\"key\":\"TEST-1\"},{\"id\":\"10002\",\"key\":\"TEST-2\"}],\"nextPageToken\":\"next\"}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        // The connection drops after the first issue has been read
+        InputStream dropped = new SequenceInputStream(new ByteArrayInputStream(bytes, 0, body.indexOf("{\"id\":\"10002\"")), new InputStream()
+        {
+            @Override
+            public int read() throws IOException
+            {
+                throw new IOException("Connection reset");
+            }
+        });
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getEntity())
+                .thenReturn(new InputStreamEntity(dropped))
+                .thenReturn(new StringEntity(body));
+        PluginTask retriedTask = CONFIG_MAPPER.map(TestHelpers.config().set("initial_retry_interval_millis", 1), PluginTask.class);
+        List<String> keys = new ArrayList<>();
+
+        String nextPageToken = jiraClient.searchIssues(retriedTask, "project = TEST", Arrays.asList("summary"), null, 50,
+                issue -> keys.add(issue.getValue("key").getAsString()));
+
+        assertEquals("next", nextPageToken);
+        assertEquals(Arrays.asList("TEST-1", "TEST-2"), keys);
+        verify(client, times(2)).execute(Mockito.any());
+        assertEquals(1, jiraClient.getMetrics().getRetries(-1));
+    }
+
+    @Test
+    public void test_getChangelogHistories() throws IOException
+    {
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getEntity())
+                .thenReturn(new StringEntity("{\"startAt\":0,\"maxResults\":2,\"total\":3,\"isLast\":false,\"values\":[{\"id\":\"1\"},{\"id\":\"2\"}]}"))
+                .thenReturn(new StringEntity("{\"startAt\":2,\"maxResults\":2,\"total\":3,\"isLast\":true,\"values\":[{\"id\":\"3\"}]}"));
+
+        JsonArray histories = jiraClient.getChangelogHistories(task, "TEST-1");
+        assertEquals(3, histories.size());
+        assertEquals("3", histories.get(2).getAsJsonObject().get("id").getAsString());
+        verify(client, times(2)).execute(Mockito.any());
+    }
 }
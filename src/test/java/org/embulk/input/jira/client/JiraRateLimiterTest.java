@@ -0,0 +1,129 @@
+package org.embulk.input.jira.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.TestHelpers;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JiraRateLimiterTest
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void test_of_recreatedForAnotherRate()
+    {
+        PluginTask guessTask = createTask(10, null);
+        JiraRateLimiter guessRateLimiter = JiraRateLimiter.of(guessTask);
+        guessRateLimiter.onThrottled(createResponse(429));
+        assertEquals(5, guessRateLimiter.getRate(), 0.001);
+
+        PluginTask runTask = createTask(20, null);
+        JiraRateLimiter runRateLimiter = JiraRateLimiter.of(runTask);
+        assertNotSame(guessRateLimiter, runRateLimiter);
+        assertEquals(20, runRateLimiter.getRate(), 0.001);
+        assertSame(runRateLimiter, JiraRateLimiter.of(runTask));
+        JiraRateLimiter.release(runTask);
+    }
+
+    @Test
+    public void test_of_scopedToTransaction()
+    {
+        PluginTask first = createTask(10, "first");
+        PluginTask second = createTask(10, "second");
+        JiraRateLimiter.of(first).onThrottled(createResponse(429));
+
+        assertEquals(5, JiraRateLimiter.of(first).getRate(), 0.001);
+        assertEquals(10, JiraRateLimiter.of(second).getRate(), 0.001);
+        JiraRateLimiter.release(first);
+        assertEquals(10, JiraRateLimiter.of(first).getRate(), 0.001);
+        JiraRateLimiter.release(first);
+        JiraRateLimiter.release(second);
+    }
+    @Test
+    public void test_rate_decreasedOnThrottleAndIncreasedOnSuccess()
+    {
+        JiraRateLimiter rateLimiter = new JiraRateLimiter(10);
+        assertEquals(10, rateLimiter.getRate(), 0.001);
+
+        assertEquals(-1, rateLimiter.onThrottled(createResponse(429)));
+        assertEquals(5, rateLimiter.getRate(), 0.001);
+        rateLimiter.onThrottled(createResponse(429));
+        assertEquals(2.5, rateLimiter.getRate(), 0.001);
+
+        rateLimiter.onSuccess(createResponse(200));
+        assertEquals(2.6, rateLimiter.getRate(), 0.001);
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.onSuccess(createResponse(200));
+        }
+        assertEquals(10, rateLimiter.getRate(), 0.001);
+    }
+
+    @Test
+    public void test_acquire_waitsForRetryAfter() throws InterruptedException
+    {
+        JiraRateLimiter rateLimiter = new JiraRateLimiter(0);
+        HttpResponse response = createResponse(429);
+        response.addHeader("Retry-After", "1");
+
+        assertEquals(1000, rateLimiter.onThrottled(response));
+        long start = System.currentTimeMillis();
+        rateLimiter.acquire();
+        assertTrue(System.currentTimeMillis() - start >= 900);
+    }
+
+    @Test
+    public void test_parseRetryAfter()
+    {
+        HttpResponse response = createResponse(429);
+        assertEquals(-1, JiraRateLimiter.parseRetryAfter(response));
+
+        response.setHeader("Retry-After", "30");
+        assertEquals(30000, JiraRateLimiter.parseRetryAfter(response));
+
+        response.setHeader("Retry-After", DateUtils.formatDate(new Date(System.currentTimeMillis() + 60000)));
+        long waitMillis = JiraRateLimiter.parseRetryAfter(response);
+        assertTrue(waitMillis > 50000 && waitMillis <= 60000);
+
+        response.setHeader("Retry-After", "invalid");
+        assertEquals(-1, JiraRateLimiter.parseRetryAfter(response));
+    }
+
+    @Test
+    public void test_parseRateLimitReset()
+    {
+        HttpResponse response = createResponse(429);
+        assertEquals(-1, JiraRateLimiter.parseRateLimitReset(response));
+
+        response.setHeader("X-RateLimit-Reset", "2019-01-01T00:00Z");
+        assertEquals(0, JiraRateLimiter.parseRateLimitReset(response));
+
+        response.setHeader("X-RateLimit-Reset", "invalid");
+        assertEquals(-1, JiraRateLimiter.parseRateLimitReset(response));
+    }
+
+    private static HttpResponse createResponse(int statusCode)
+    {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+    }
+
+    private static PluginTask createTask(double requestsPerSecond, String rateLimiterId)
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config().set("requests_per_second", requestsPerSecond), PluginTask.class);
+        task.setRateLimiterId(rateLimiterId);
+        return task;
+    }
+}
@@ -0,0 +1,133 @@
+package org.embulk.input.jira.client;
+
+import com.google.common.io.CharStreams;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.TestHelpers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class SearchCacheTest
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(60);
+
+    @Test
+    public void test_key()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config(), PluginTask.class);
+        String key = SearchCache.key(task, "{\"jql\":\"project = A\"}");
+        assertEquals(64, key.length());
+        assertEquals(key, SearchCache.key(CONFIG_MAPPER.map(TestHelpers.config(), PluginTask.class), "{\"jql\":\"project = A\"}"));
+        assertNotEquals(key, SearchCache.key(task, "{\"jql\":\"project = B\"}"));
+        assertNotEquals(key, SearchCache.key(CONFIG_MAPPER.map(TestHelpers.config().set("uri", "https://example.org/"), PluginTask.class),
+                "{\"jql\":\"project = A\"}"));
+        // Users with other permissions never share pages
+        assertNotEquals(key, SearchCache.key(CONFIG_MAPPER.map(TestHelpers.config().set("username", "other@example.com"), PluginTask.class),
+                "{\"jql\":\"project = A\"}"));
+        assertNotEquals(key, SearchCache.key(CONFIG_MAPPER.map(TestHelpers.config().set("password", "YYYYYYYYYYYYYYYYY"), PluginTask.class),
+                "{\"jql\":\"project = A\"}"));
+    }
+
+    @Test
+    public void test_commitAndOpen() throws IOException
+    {
+        SearchCache cache = new SearchCache(folder.getRoot().toPath(), TTL_MILLIS, 1024 * 1024);
+        assertNull(cache.open("page"));
+
+        assertEquals("{\"issues\":[]}", write(cache, "page", "{\"issues\":[]}"));
+        try (Reader reader = cache.open("page")) {
+            assertEquals("{\"issues\":[]}", CharStreams.toString(reader));
+        }
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    public void test_discard() throws IOException
+    {
+        SearchCache cache = new SearchCache(folder.getRoot().toPath(), TTL_MILLIS, 1024 * 1024);
+        SearchCache.Entry entry = cache.create("page");
+        CharStreams.toString(entry.tee(new StringReader("{\"issues\":")));
+        entry.discard();
+
+        assertNull(cache.open("page"));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void test_open_expired() throws IOException
+    {
+        SearchCache cache = new SearchCache(folder.getRoot().toPath(), TTL_MILLIS, 1024 * 1024);
+        write(cache, "page", "{\"issues\":[]}");
+        Files.setLastModifiedTime(folder.getRoot().toPath().resolve("page.json.gz"),
+                FileTime.fromMillis(System.currentTimeMillis() - TTL_MILLIS - 1000));
+
+        assertNull(cache.open("page"));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void test_evict_leastRecentlyUsed() throws IOException
+    {
+        Path directory = folder.getRoot().toPath();
+        // Room for two pages of this size
+        SearchCache cache = new SearchCache(directory, TTL_MILLIS, 100);
+        write(cache, "first", "{\"issues\":[{\"id\":\"1\"}]}");
+        write(cache, "second", "{\"issues\":[{\"id\":\"2\"}]}");
+        Files.setAttribute(directory.resolve("first.json.gz"), "lastAccessTime", FileTime.fromMillis(System.currentTimeMillis() - 2000));
+        Files.setAttribute(directory.resolve("second.json.gz"), "lastAccessTime", FileTime.fromMillis(System.currentTimeMillis() - 3000));
+        // Reading the first page makes the second one the least recently used
+        cache.open("first").close();
+
+        write(cache, "third", "{\"issues\":[{\"id\":\"3\"}]}");
+        // Committing a page does not evict
+        assertEquals(3, countFiles());
+
+        cache.evict();
+        assertNull(cache.open("second"));
+        cache.open("first").close();
+        cache.open("third").close();
+    }
+
+    @Test
+    public void test_evict_missingDirectory()
+    {
+        // Only logged
+        new SearchCache(folder.getRoot().toPath().resolve("missing"), TTL_MILLIS, 100).evict();
+    }
+
+    private static String write(final SearchCache cache, final String key, final String page) throws IOException
+    {
+        SearchCache.Entry entry = cache.create(key);
+        String read = CharStreams.toString(entry.tee(new StringReader(page)));
+        entry.commit();
+        entry.discard();
+        return read;
+    }
+
+    private long countFiles() throws IOException
+    {
+        try (Stream<Path> paths = Files.list(folder.getRoot().toPath())) {
+            return paths.count();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.embulk.input.jira.util;
+
+import com.google.gson.JsonParser;
+import org.embulk.input.jira.Issue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChangelogItemsTest
+{
+    @Test
+    public void test_forEach()
+    {
+        String json = "{\"id\":\"10001\",\"key\":\"TEST-1\",\"changelog\":{\"total\":2,\"histories\":["
+                + "{\"id\":\"1\",\"author\":{\"displayName\":\"Alice\"},\"created\":\"2019-01-01T00:00:00.000+0000\",\"items\":["
+                + "{\"field\":\"status\",\"fieldtype\":\"jira\",\"fieldId\":\"status\",\"from\":\"1\",\"fromString\":\"Open\",\"to\":\"3\",\"toString\":\"In Progress\"},"
+                + "{\"field\":\"assignee\",\"fieldtype\":\"jira\",\"from\":null,\"fromString\":null,\"to\":\"bob\",\"toString\":\"Bob\"}]},"
+                + "{\"id\":\"2\",\"created\":\"2019-01-02T00:00:00.000+0000\",\"items\":[]}]}}";
+        List<Issue> rows = new ArrayList<>();
+
+        ChangelogItems.forEach(new Issue(new JsonParser().parse(json).getAsJsonObject()), rows::add);
+
+        assertEquals(2, rows.size());
+        Issue row = rows.get(0);
+        assertEquals("10001", row.getValue("issue_id").getAsString());
+        assertEquals("TEST-1", row.getValue("issue_key").getAsString());
+        assertEquals("1", row.getValue("history_id").getAsString());
+        assertEquals("Alice", row.getValue("author.displayName").getAsString());
+        assertEquals("2019-01-01T00:00:00.000+0000", row.getValue("created").getAsString());
+        assertEquals("status", row.getValue("field").getAsString());
+        assertEquals("jira", row.getValue("field_type").getAsString());
+        assertEquals("status", row.getValue("field_id").getAsString());
+        assertEquals("Open", row.getValue("from_string").getAsString());
+        assertEquals("In Progress", row.getValue("to_string").getAsString());
+        row = rows.get(1);
+        assertTrue(row.getValue("field_id").isJsonNull());
+        assertTrue(row.getValue("from").isJsonNull());
+        assertEquals("Bob", row.getValue("to_string").getAsString());
+    }
+
+    @Test
+    public void test_forEach_withoutChangelog()
+    {
+        List<Issue> rows = new ArrayList<>();
+        ChangelogItems.forEach(new Issue(new JsonParser().parse("{\"id\":\"10001\",\"key\":\"TEST-1\"}").getAsJsonObject()), rows::add);
+        assertEquals(0, rows.size());
+    }
+}
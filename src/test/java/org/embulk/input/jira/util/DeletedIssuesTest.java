@@ -0,0 +1,40 @@
+package org.embulk.input.jira.util;
+
+import org.embulk.input.jira.Issue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeletedIssuesTest
+{
+    @Test
+    public void test_forEach()
+    {
+        List<Issue> rows = new ArrayList<>();
+
+        DeletedIssues.forEach(new long[] {10000, 10001, 10003, 10007, 10010}, new long[] {10001, 10002, 10003, 10008},
+                "2019-01-01T00:00:00.000+0000", rows::add);
+
+        assertEquals(3, rows.size());
+        assertEquals(10000, rows.get(0).getValue("id").getAsLong());
+        assertEquals(10007, rows.get(1).getValue("id").getAsLong());
+        assertEquals(10010, rows.get(2).getValue("id").getAsLong());
+        assertTrue(rows.get(0).getValue("deleted").getAsBoolean());
+        assertEquals("2019-01-01T00:00:00.000+0000", rows.get(0).getValue("detected_at").getAsString());
+    }
+
+    @Test
+    public void test_forEach_nothingGone()
+    {
+        List<Issue> rows = new ArrayList<>();
+
+        DeletedIssues.forEach(new long[] {10001, 10002}, new long[] {10000, 10001, 10002, 10003}, "2019-01-01T00:00:00.000+0000", rows::add);
+        DeletedIssues.forEach(new long[0], new long[] {10000}, "2019-01-01T00:00:00.000+0000", rows::add);
+
+        assertTrue(rows.isEmpty());
+    }
+}
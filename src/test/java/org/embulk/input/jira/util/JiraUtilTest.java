@@ -1,16 +1,22 @@
 package org.embulk.input.jira.util;
 
 import com.google.gson.JsonObject;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.input.jira.Issue;
 import org.embulk.input.jira.JiraInputPlugin.PluginTask;
 import org.embulk.input.jira.TestHelpers;
+import org.embulk.input.jira.client.JiraClient;
 import org.embulk.spi.Column;
 import org.embulk.spi.PageBuilder;
 import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.embulk.util.config.units.ColumnConfig;
+import org.embulk.util.config.units.SchemaConfig;
 import org.embulk.util.json.JsonParser;
 import org.embulk.util.timestamp.TimestampFormatter;
+import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -18,8 +24,11 @@ import org.msgpack.value.Value;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER_FACTORY;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.Mockito.times;
@@ -36,6 +45,8 @@ public class JiraUtilTest
     private static Column stringColumn;
     private static Column dateColumn;
     private static Column jsonColumn;
+    private static CloseableHttpClient httpClient;
+    private static final ConfigSource EMPTY_CONFIG_SOURCE = CONFIG_MAPPER_FACTORY.newConfigSource();
 
     @BeforeClass
     public static void setUp() throws IOException
@@ -49,6 +60,13 @@ public class JiraUtilTest
         stringColumn = schema.getColumn(3);
         dateColumn = schema.getColumn(4);
         jsonColumn = schema.getColumn(5);
+        httpClient = new JiraClient().createHttpClient(pluginTask);
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException
+    {
+        httpClient.close();
     }
 
     @Test
@@ -109,12 +127,123 @@ public class JiraUtilTest
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void test_appendJqlCondition()
+    {
+        assertEquals("project = A", JiraUtil.appendJqlCondition("project = A", ""));
+        assertEquals("created < \"2020-01-01 00:00\"", JiraUtil.appendJqlCondition("", "created < \"2020-01-01 00:00\""));
+        assertEquals("(project = A OR project = B) AND created < \"2020-01-01 00:00\"",
+                JiraUtil.appendJqlCondition("project = A OR project = B", "created < \"2020-01-01 00:00\""));
+        assertEquals("(project = A) AND created < \"2020-01-01 00:00\" ORDER BY key ASC",
+                JiraUtil.appendJqlCondition("project = A ORDER BY key ASC", "created < \"2020-01-01 00:00\""));
+        assertEquals("created < \"2020-01-01 00:00\" order by key",
+                JiraUtil.appendJqlCondition("order by key", "created < \"2020-01-01 00:00\""));
+    }
+
+    @Test
+    public void test_replaceJqlOrderBy()
+    {
+        assertEquals("project = A ORDER BY id ASC", JiraUtil.replaceJqlOrderBy("project = A", "ORDER BY id ASC"));
+        assertEquals("project = A ORDER BY id DESC", JiraUtil.replaceJqlOrderBy("project = A order by key ASC", "ORDER BY id DESC"));
+        assertEquals("ORDER BY id ASC", JiraUtil.replaceJqlOrderBy("ORDER BY created", "ORDER BY id ASC"));
+        assertEquals("ORDER BY id ASC", JiraUtil.replaceJqlOrderBy("", "ORDER BY id ASC"));
+    }
+
+    @Test
+    public void test_quoteJqlValue()
+    {
+        assertEquals("\"ABC\"", JiraUtil.quoteJqlValue("ABC"));
+        assertEquals("\"A \\\"B\\\" \\\\C\"", JiraUtil.quoteJqlValue("A \"B\" \\C"));
+    }
+
+    @Test
+    public void test_maxTimestamp()
+    {
+        assertEquals("2019-01-01T00:00:00.000+0000", JiraUtil.maxTimestamp(null, "2019-01-01T00:00:00.000+0000"));
+        assertEquals("2019-01-01T00:00:00.000+0000", JiraUtil.maxTimestamp("2019-01-01T00:00:00.000+0000", "2019-01-01T08:00:00.000+0900"));
+        assertEquals("2019-01-01T10:00:00.000+0900", JiraUtil.maxTimestamp("2019-01-01T00:00:00.000+0000", "2019-01-01T10:00:00.000+0900"));
+        assertEquals("2019-01-01T00:00:00.000+0000", JiraUtil.maxTimestamp("2019-01-01T00:00:00.000+0000", "abcxyz"));
+    }
+
+    @Test
+    public void test_buildTaskJql_incremental()
+    {
+        ConfigSource configSource = TestHelpers.config()
+                .set("incremental", true)
+                .set("last_updated", "2019-01-02T09:00:00.000+0900");
+        PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
+        assertEquals("(project = example) AND updated >= \"2019-01-02 08:55\"", JiraUtil.buildTaskJql(task, 0));
+
+        configSource.remove("last_updated");
+        task = CONFIG_MAPPER.map(configSource, PluginTask.class);
+        assertEquals("project = example", JiraUtil.buildTaskJql(task, 0));
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void test_buildRequestFields()
+    {
+        Schema projected = new SchemaConfig(new ArrayList<ColumnConfig>()
+        {
+            {
+                add(new ColumnConfig("id", Types.LONG, EMPTY_CONFIG_SOURCE));
+                add(new ColumnConfig("key", Types.STRING, EMPTY_CONFIG_SOURCE));
+                add(new ColumnConfig("assignee.name", Types.STRING, EMPTY_CONFIG_SOURCE));
+                add(new ColumnConfig("assignee.key", Types.STRING, EMPTY_CONFIG_SOURCE));
+                add(new ColumnConfig("summary", Types.STRING, EMPTY_CONFIG_SOURCE));
+                add(new ColumnConfig("changelog", Types.JSON, EMPTY_CONFIG_SOURCE));
+            }
+        }).toSchema();
+        ConfigSource configSource = TestHelpers.config().set("expand", Arrays.asList("changelog"));
+        PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
+        assertEquals(Arrays.asList("assignee", "summary"), JiraUtil.buildRequestFields(task, projected));
+
+        task = CONFIG_MAPPER.map(configSource.set("incremental", true), PluginTask.class);
+        assertEquals(Arrays.asList("assignee", "summary", "updated"), JiraUtil.buildRequestFields(task, projected));
+
+        task = CONFIG_MAPPER.map(configSource.set("fetch_subresources", Arrays.asList("worklogs")), PluginTask.class);
+        assertEquals(Arrays.asList("assignee", "summary", "worklog", "updated"), JiraUtil.buildRequestFields(task, projected));
+
+        task = CONFIG_MAPPER.map(configSource.set("record_mode", "changelog_items"), PluginTask.class);
+        assertEquals(Arrays.asList("updated"), JiraUtil.buildRequestFields(task, projected));
+
+        task = CONFIG_MAPPER.map(configSource.set("incremental", false), PluginTask.class);
+        assertEquals(Arrays.asList("id"), JiraUtil.buildRequestFields(task, projected));
+
+        task = CONFIG_MAPPER.map(configSource.set("fetch_all_fields", true), PluginTask.class);
+        assertEquals(Arrays.asList("*all"), JiraUtil.buildRequestFields(task, projected));
+    }
+
+    @Test
+    public void test_buildExpand()
+    {
+        ConfigSource configSource = TestHelpers.config().set("expand", Arrays.asList("renderedFields"));
+        PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
+        assertEquals(Arrays.asList("renderedFields"), JiraUtil.buildExpand(task));
+
+        task = CONFIG_MAPPER.map(configSource.set("fetch_full_changelog", true), PluginTask.class);
+        assertEquals(Arrays.asList("renderedFields", "changelog"), JiraUtil.buildExpand(task));
+
+        task = CONFIG_MAPPER.map(configSource.set("expand", Arrays.asList("changelog")), PluginTask.class);
+        assertEquals(Arrays.asList("changelog"), JiraUtil.buildExpand(task));
+
+        task = CONFIG_MAPPER.map(TestHelpers.config().set("record_mode", "changelog_items"), PluginTask.class);
+        assertEquals(Arrays.asList("changelog"), JiraUtil.buildExpand(task));
+    }
+
+    @Test
+    public void test_buildIssueResourceUrl()
+    {
+        assertEquals("https://example.com/rest/api/latest/issue/TEST-1/changelog?startAt=100&maxResults=100",
+                JiraUtil.buildIssueResourceUrl("https://example.com/", "rest/api/latest/issue/{issueKey}/changelog", "TEST-1", 100, 100));
+    }
+
     @Test
     public void test_validateTaskConfig_allValid() throws IOException
     {
         ConfigSource configSource = TestHelpers.config();
         PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-        JiraUtil.validateTaskConfig(task);
+        JiraUtil.validateTaskConfig(task, httpClient);
     }
 
     @Test
@@ -124,7 +253,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("username", "");
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("Username or email could not be empty", exception.getMessage());
     }
@@ -136,7 +265,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("password", "");
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("Password could not be empty", exception.getMessage());
     }
@@ -148,7 +277,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("uri", "");
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("JIRA API endpoint could not be empty", exception.getMessage());
     }
@@ -160,7 +289,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("uri", "https://not-existed-domain");
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("JIRA API endpoint is incorrect or not available", exception.getMessage());
     }
@@ -172,7 +301,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("uri", "ftp://example.com");
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("JIRA API endpoint is incorrect or not available", exception.getMessage());
     }
@@ -184,7 +313,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("uri", "https://example .com");
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("JIRA API endpoint is incorrect or not available", exception.getMessage());
     }
@@ -195,7 +324,7 @@ public class JiraUtilTest
         ConfigSource configSource = TestHelpers.config();
         configSource.set("jql", "");
         PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-        JiraUtil.validateTaskConfig(task);
+        JiraUtil.validateTaskConfig(task, httpClient);
     }
 
     @Test
@@ -204,7 +333,7 @@ public class JiraUtilTest
         ConfigSource configSource = TestHelpers.config();
         configSource.remove("jql");
         PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-        JiraUtil.validateTaskConfig(task);
+        JiraUtil.validateTaskConfig(task, httpClient);
     }
 
     @Test
@@ -214,7 +343,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("initial_retry_interval_millis", 0);
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("Initial retry delay should be equal or greater than 1", exception.getMessage());
     }
@@ -226,7 +355,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("initial_retry_interval_millis", -1);
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("Initial retry delay should be equal or greater than 1", exception.getMessage());
     }
@@ -238,7 +367,7 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("retry_limit", 11);
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("Retry limit should between 0 and 10", exception.getMessage());
     }
@@ -250,11 +379,61 @@ public class JiraUtilTest
             ConfigSource configSource = TestHelpers.config();
             configSource.set("retry_limit", -1);
             PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
-            JiraUtil.validateTaskConfig(task);
+            JiraUtil.validateTaskConfig(task, httpClient);
         });
         assertEquals("Retry limit should between 0 and 10", exception.getMessage());
     }
 
+    @Test
+    public void test_validateTaskConfig_PrefetchPagesIsNegative() throws IOException
+    {
+        ConfigException exception = assertThrows(ConfigException.class, () -> {
+            ConfigSource configSource = TestHelpers.config();
+            configSource.set("prefetch_pages", -1);
+            PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
+            JiraUtil.validateTaskConfig(task, httpClient);
+        });
+        assertEquals("Prefetch pages should be equal or greater than 0", exception.getMessage());
+    }
+
+    @Test
+    public void test_validateTaskConfig_SearchChainsWithCheckpoint() throws IOException
+    {
+        ConfigException exception = assertThrows(ConfigException.class, () -> {
+            ConfigSource configSource = TestHelpers.config();
+            configSource.set("search_chains", 4);
+            configSource.set("checkpoint_directory", "/tmp/checkpoints");
+            PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
+            JiraUtil.validateTaskConfig(task, httpClient);
+        });
+        assertEquals("checkpoint_directory could not be used when search_chains is greater than 1", exception.getMessage());
+    }
+
+    @Test
+    public void test_validateTaskConfig_DeletedIssuesWithoutSnapshot() throws IOException
+    {
+        ConfigException exception = assertThrows(ConfigException.class, () -> {
+            ConfigSource configSource = TestHelpers.config();
+            configSource.set("record_mode", "deleted_issues");
+            PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
+            JiraUtil.validateTaskConfig(task, httpClient);
+        });
+        assertEquals("id_snapshot_file is required when record_mode is deleted_issues", exception.getMessage());
+    }
+
+    @Test
+    public void test_validateTaskConfig_IssueKeysWithIncremental() throws IOException
+    {
+        ConfigException exception = assertThrows(ConfigException.class, () -> {
+            ConfigSource configSource = TestHelpers.config();
+            configSource.set("issue_keys", Arrays.asList("TEST-1", "TEST-2"));
+            configSource.set("incremental", true);
+            PluginTask task = CONFIG_MAPPER.map(configSource, PluginTask.class);
+            JiraUtil.validateTaskConfig(task, httpClient);
+        });
+        assertEquals("incremental could not be used with issue_keys and issue_ids_file", exception.getMessage());
+    }
+
     @Test
     @SuppressWarnings("deprecation") // TODO: For compatibility with Embulk v0.9
     public void test_addRecord_allRight()
@@ -329,4 +508,25 @@ public class JiraUtilTest
 
         verify(mock, times(1)).setString(stringColumn, stringValue);
     }
+
+    @Test
+    @SuppressWarnings("deprecation") // TODO: For compatibility with Embulk v0.9
+    public void test_addRecord_timestampReusedPlan()
+    {
+        RecordPlan recordPlan = new RecordPlan(schema, pluginTask);
+        TimestampFormatter formatter = TimestampFormatter
+                .builder("%Y-%m-%dT%H:%M:%S.%L%z", true)
+                .setDefaultZoneFromString("UTC")
+                .build();
+        for (String date : new String[] {"2019-01-01T09:30:00.123+0900", "2019-01-01T00:00:00.000Z", "2018-12-31T22:30:00.000-0130"}) {
+            JsonObject json = new JsonObject();
+            json.addProperty("date", date);
+            PageBuilder mock = Mockito.mock(PageBuilder.class);
+
+            recordPlan.addRecord(new Issue(json), mock);
+
+            // TODO: Use Instant instead of Timestamp
+            verify(mock, times(1)).setTimestamp(dateColumn, org.embulk.spi.time.Timestamp.ofInstant(formatter.parse(date)));
+        }
+    }
 }
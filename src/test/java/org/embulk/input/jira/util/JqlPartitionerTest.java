@@ -0,0 +1,126 @@
+package org.embulk.input.jira.util;
+
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.input.jira.JiraInputPlugin.PluginTask;
+import org.embulk.input.jira.TestHelpers;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class JqlPartitionerTest
+{
+    @Test
+    public void test_createPartitions_none()
+    {
+        PluginTask task = CONFIG_MAPPER.map(TestHelpers.config().set("max_tasks", 4), PluginTask.class);
+        assertTrue(JqlPartitioner.createPartitions(task).isEmpty());
+    }
+
+    @Test
+    public void test_createPartitions_created()
+    {
+        ConfigSource config = TestHelpers.config()
+                .set("partition_by", "created")
+                .set("max_tasks", 4)
+                .set("partition_created_from", "2020-01-01")
+                .set("partition_created_to", "2020-01-05");
+        PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+        List<String> expected = Arrays.asList(
+                "created < \"2020-01-02 00:00\"",
+                "created >= \"2020-01-02 00:00\" AND created < \"2020-01-03 00:00\"",
+                "created >= \"2020-01-03 00:00\" AND created < \"2020-01-04 00:00\"",
+                "created >= \"2020-01-04 00:00\"");
+        assertEquals(expected, JqlPartitioner.createPartitions(task));
+    }
+
+    @Test
+    public void test_createPartitions_createdWithoutFrom()
+    {
+        ConfigSource config = TestHelpers.config()
+                .set("partition_by", "created")
+                .set("max_tasks", 4);
+        PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+        assertThrows(ConfigException.class, () -> JqlPartitioner.createPartitions(task));
+    }
+
+    @Test
+    public void test_createProjectPartitions()
+    {
+        List<String> expected = Arrays.asList(
+                "project in (\"A\", \"C\")",
+                "project not in (\"A\", \"C\")");
+        assertEquals(expected, JqlPartitioner.createProjectPartitions(Arrays.asList("A", "B", "C"), 2));
+        assertTrue(JqlPartitioner.createProjectPartitions(Arrays.asList("A", "B", "C"), 1).isEmpty());
+        assertThrows(ConfigException.class, () -> JqlPartitioner.createProjectPartitions(Collections.emptyList(), 2));
+    }
+
+    @Test
+    public void test_createIdPartitions()
+    {
+        List<String> expected = Arrays.asList(
+                "id < 10025",
+                "id >= 10025 AND id < 10050",
+                "id >= 10050 AND id < 10075",
+                "id >= 10075");
+        assertEquals(expected, JqlPartitioner.createIdPartitions(10000, 10099, 4));
+        assertEquals(Arrays.asList("id < 10001", "id >= 10001"), JqlPartitioner.createIdPartitions(10000, 10001, 4));
+        assertTrue(JqlPartitioner.createIdPartitions(10000, 10000, 4).isEmpty());
+        assertTrue(JqlPartitioner.createIdPartitions(10000, 10099, 1).isEmpty());
+    }
+
+    @Test
+    public void test_createBalancedPartitions_created()
+    {
+        ConfigSource config = TestHelpers.config()
+                .set("partition_by", "created")
+                .set("max_tasks", 2)
+                .set("partition_created_from", "2020-01-01")
+                .set("partition_created_to", "2020-01-05");
+        PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+        // Half of the 1000 issues were created before 2020-01-02 12:00, the other half after
+        List<String> partitions = JqlPartitioner.createBalancedPartitions(task, condition -> {
+            if (condition.isEmpty()) {
+                return 1000;
+            }
+            return condition.compareTo("created < \"2020-01-02 12:00\"") > 0 ? 500 : 0;
+        });
+
+        assertEquals(2, partitions.size());
+        assertTrue(partitions.get(0), partitions.get(0).matches("created < \"2020-01-02 12:0[0-2]\""));
+        assertTrue(partitions.get(1), partitions.get(1).matches("created >= \"2020-01-02 12:0[0-2]\""));
+    }
+
+    @Test
+    public void test_createBalancedPartitions_project()
+    {
+        ConfigSource config = TestHelpers.config()
+                .set("partition_by", "project")
+                .set("max_tasks", 2)
+                .set("partition_projects", Arrays.asList("A", "B", "C", "D"));
+        PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+        Map<String, Long> counts = new HashMap<>();
+        counts.put("", 1100L);
+        counts.put("project = \"A\"", 100L);
+        counts.put("project = \"B\"", 700L);
+        counts.put("project = \"C\"", 100L);
+        counts.put("project = \"D\"", 100L);
+
+        List<String> expected = Arrays.asList(
+                "project in (\"B\")",
+                "project not in (\"B\")");
+        assertEquals(expected, JqlPartitioner.createBalancedPartitions(task, counts::get));
+        // Less than a page of issues is loaded by a single task
+        counts.put("", 30L);
+        assertTrue(JqlPartitioner.createBalancedPartitions(task, counts::get).isEmpty());
+    }
+}
@@ -0,0 +1,36 @@
+package org.embulk.input.jira.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import org.embulk.util.json.JsonParser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonValueConverterTest
+{
+    @Test
+    public void test_toValue_sameAsReparse()
+    {
+        String[] jsons = {
+            "{}",
+            "[]",
+            "{\"a\":1,\"b\":-2.5,\"c\":\"str\",\"d\":true,\"e\":null}",
+            "[1,1.0,1e3,-0,9223372036854775807,9223372036854775808,-92233720368547758090]",
+            "{\"histories\":[{\"id\":\"1\",\"items\":[{\"field\":\"status\",\"from\":null,\"to\":\"\\u30c6\\u30b9\\u30c8\"}]}]}",
+            "[[[]],{\"nested\":{\"deep\":[false,{\"x\":0.125}]}}]",
+        };
+        for (String json : jsons) {
+            JsonElement element = new com.google.gson.JsonParser().parse(json);
+            assertEquals(json, new JsonParser().parse(element.toString()), JsonValueConverter.toValue(element));
+        }
+    }
+
+    @Test
+    public void test_toValue_null()
+    {
+        assertTrue(JsonValueConverter.toValue(JsonNull.INSTANCE).isNilValue());
+        assertTrue(JsonValueConverter.toValue(null).isNilValue());
+    }
+}
@@ -0,0 +1,95 @@
+package org.embulk.input.jira.util;
+
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.TaskReport;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.embulk.input.jira.JiraInputPlugin.CONFIG_MAPPER_FACTORY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TaskMetricsTest
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void test_getLatencyPercentileMillis()
+    {
+        TaskMetrics metrics = new TaskMetrics();
+        assertEquals(0, metrics.getLatencyPercentileMillis(0.99));
+        for (int i = 0; i < 99; i++) {
+            metrics.addRequest(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        metrics.addRequest(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        long p50 = metrics.getLatencyPercentileMillis(0.5);
+        long p99 = metrics.getLatencyPercentileMillis(0.99);
+        long p100 = metrics.getLatencyPercentileMillis(1.0);
+        // Within the 5% of the buckets
+        assertTrue(p50 >= 10 && p50 <= 11);
+        assertEquals(p50, p99);
+        assertTrue(p100 >= 1000 && p100 <= 1050);
+    }
+
+    @Test
+    public void test_toTaskReport()
+    {
+        TaskMetrics metrics = new TaskMetrics();
+        metrics.addPage();
+        metrics.addIssue(1);
+        metrics.addIssue(3);
+        metrics.addBytesReceived(1024);
+        metrics.addRequest(TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.addRequest(TimeUnit.MILLISECONDS.toNanos(40));
+        metrics.addWait(TimeUnit.MILLISECONDS.toNanos(100));
+        metrics.addRetry(429);
+        metrics.addRetry(429);
+        metrics.addRetry(-1);
+
+        TaskReport report = metrics.toTaskReport(CONFIG_MAPPER_FACTORY.newTaskReport());
+        assertEquals(1L, (long) report.get(Long.class, "pages"));
+        assertEquals(2L, (long) report.get(Long.class, "issues"));
+        assertEquals(4L, (long) report.get(Long.class, "records"));
+        assertEquals(2L, (long) report.get(Long.class, "requests"));
+        assertEquals(1024L, (long) report.get(Long.class, "bytes_received"));
+        assertEquals(60L, (long) report.get(Long.class, "http_latency_total_ms"));
+        assertEquals(30L, (long) report.get(Long.class, "http_latency_mean_ms"));
+        assertEquals(160L, (long) report.get(Long.class, "api_wait_ms"));
+        assertEquals(2L, (long) report.getNested("retries").get(Long.class, "429"));
+        assertEquals(1L, (long) report.getNested("retries").get(Long.class, "-1"));
+    }
+
+    @Test
+    public void test_aggregate()
+    {
+        TaskMetrics first = new TaskMetrics();
+        first.addPage();
+        first.addIssue(1);
+        first.addRequest(TimeUnit.MILLISECONDS.toNanos(10));
+        first.addRetry(429);
+        TaskMetrics second = new TaskMetrics();
+        second.addPage();
+        second.addPage();
+        second.addIssue(1);
+        second.addRequest(TimeUnit.MILLISECONDS.toNanos(30));
+        second.addRetry(429);
+        second.addRetry(500);
+
+        TaskReport aggregated = TaskMetrics.aggregate(Arrays.asList(
+                first.toTaskReport(CONFIG_MAPPER_FACTORY.newTaskReport()),
+                second.toTaskReport(CONFIG_MAPPER_FACTORY.newTaskReport())), CONFIG_MAPPER_FACTORY.newTaskReport());
+        assertEquals(3L, (long) aggregated.get(Long.class, "pages"));
+        assertEquals(2L, (long) aggregated.get(Long.class, "issues"));
+        assertEquals(2L, (long) aggregated.get(Long.class, "requests"));
+        assertEquals(20L, (long) aggregated.get(Long.class, "http_latency_mean_ms"));
+        assertEquals(second.getLatencyPercentileMillis(0.99), (long) aggregated.get(Long.class, "http_latency_p99_ms"));
+        assertEquals(2L, (long) aggregated.getNested("retries").get(Long.class, "429"));
+        assertEquals(1L, (long) aggregated.getNested("retries").get(Long.class, "500"));
+        assertTrue(TaskMetrics.describe(aggregated).startsWith("3 pages (0 from the cache), 2 issues, 2 records, 2 requests"));
+    }
+}